@@ -0,0 +1,44 @@
+package com.bng.controller;
+
+import com.bng.model.AnalyticsSketch;
+import com.bng.model.AnalyticsSummary;
+import com.bng.service.ChatAnalyticsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Read-only view of the chat analytics of this node, for operators holding the admin key
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    private final ChatAnalyticsService chatAnalyticsService;
+    private final int maxTop;
+
+    public AnalyticsController(ChatAnalyticsService chatAnalyticsService,
+                               @Value("${analytics.candidates-per-bucket:50}") int maxTop) {
+        this.chatAnalyticsService = chatAnalyticsService;
+        this.maxTop = maxTop;
+    }
+
+    /**
+     * Top questions and cache hit rates in the window, and distinct users today
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<AnalyticsSummary> summary(@RequestParam(name = "top", defaultValue = "10") int top) {
+        return ResponseEntity.ok(chatAnalyticsService.summary(Math.max(1, Math.min(top, maxTop))));
+    }
+
+    /**
+     * The window as mergeable sketches, for combining the analytics of several nodes
+     */
+    @GetMapping("/sketch")
+    public ResponseEntity<AnalyticsSketch> sketch() {
+        return ResponseEntity.ok(chatAnalyticsService.sketch());
+    }
+}
@@ -1,38 +1,347 @@
 package com.bng.controller;
 
+import com.bng.exception.DeadlineExceededException;
+import com.bng.exception.LaneSaturatedException;
+import com.bng.model.AskBatchItem;
+import com.bng.model.AskBatchRequest;
 import com.bng.model.AskRequest;
 import com.bng.model.AskResponse;
-import com.bng.model.ErrorResponse;
+import com.bng.service.AskBatchService;
+import com.bng.service.AskLanes;
 import com.bng.service.AskService;
+import com.bng.service.IdempotencyStore;
+import com.bng.service.NonceService;
+import com.bng.util.CachedAnswer;
+import com.bng.util.DeadlineMetrics;
+import com.bng.util.JsonResponseWriter;
+import com.bng.util.RequestDeadline;
 import jakarta.validation.Valid;
-import com.google.gson.Gson;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api")
 public class AskController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final AskService askService;
-    private final Gson gson = new Gson();
+    private final JsonResponseWriter jsonResponseWriter;
+    private final DeadlineMetrics deadlineMetrics;
+    private final AskLanes askLanes;
+    private final AskBatchService askBatchService;
+    private final NonceService nonceService;
+    private final IdempotencyStore idempotencyStore;
 
-    public AskController(AskService askService) {
+    public AskController(AskService askService, JsonResponseWriter jsonResponseWriter, DeadlineMetrics deadlineMetrics,
+                         AskLanes askLanes, AskBatchService askBatchService, NonceService nonceService,
+                         IdempotencyStore idempotencyStore) {
         this.askService = askService;
+        this.jsonResponseWriter = jsonResponseWriter;
+        this.deadlineMetrics = deadlineMetrics;
+        this.askLanes = askLanes;
+        this.askBatchService = askBatchService;
+        this.nonceService = nonceService;
+        this.idempotencyStore = idempotencyStore;
     }
 
+    /**
+     * Cache hits are answered right here. Misses go to the bounded upstream lane and are answered
+     * asynchronously, so that the request's deadline and a client disconnect can cancel the work,
+     * which is then reported as 504 instead of holding the connection until the upstream gives up.
+     * A full upstream lane is reported as 503 with Retry-After.
+     * <p>
+     * With an Idempotency-Key header, a retry of the same question is answered by the first request's
+     * computation instead of starting another one. Such a computation is only stopped by its own deadline,
+     * not by its client going away, since a retry may be waiting for it.
+     */
     @PostMapping("/ask")
-    public ResponseEntity<?> ask(
+    public DeferredResult<ResponseEntity<?>> ask(
             @RequestParam(name = "username", required = false) String username,
-            @Valid @RequestBody AskRequest request) throws Exception {
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @Valid @RequestBody AskRequest request,
+            @RequestAttribute(RequestDeadline.REQUEST_ATTRIBUTE) RequestDeadline deadline) {
+        ResponseEntity<?> rejected = validateUsername(username);
+        if (rejected != null) {
+            return completed(rejected);
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        if (idempotencyKey == null) {
+            return respond(answer(request, username, deadline), deadline, gzip, true, false);
+        }
+
+        if (!isValidIdempotencyKey(idempotencyKey)) {
+            return completed(badRequest("Idempotency-Key must be 1 to 255 printable ASCII characters"));
+        }
+        IdempotencyStore.Claim claim = idempotencyStore.claim(username, idempotencyKey, request.getQuestion());
+        if (claim.isOwner()) {
+            idempotencyStore.track(claim, answer(request, username, deadline));
+        }
+        return respond(claim.answer(), deadline, gzip, false, !claim.isOwner());
+    }
+
+    /**
+     * Read-only variant of {@link #ask}: answers from the cache only, with 404 if the question has no cached answer,
+     * and never logs the question or asks the upstream. The answer carries a strong ETag, and an If-None-Match
+     * naming it is answered with 304 and no body.
+     */
+    @GetMapping("/ask")
+    public ResponseEntity<?> askCached(
+            @RequestParam(name = "username", required = false) String username,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @Valid @ModelAttribute AskRequest request) {
+        ResponseEntity<?> rejected = validateUsername(username);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        CachedAnswer cached = askService.findCachedAnswer(request, username);
+        if (cached == null) {
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(jsonResponseWriter.staticErrorBody("No cached answer for this question"));
+        }
+        CachedAnswer.Encoded encoded = cached.encoded(this::encodeAnswer);
+        if (encoded.matches(ifNoneMatch)) {
+            boolean gzip = acceptsGzip(acceptEncoding) && encoded.gzipped() != null;
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(gzip ? encoded.gzipEtag() : encoded.etag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        return encodedResponse(ResponseEntity.ok(), encoded, acceptsGzip(acceptEncoding));
+    }
+
+    /**
+     * Cache hits complete right away, misses once the upstream lane has answered
+     */
+    private CompletableFuture<AskResponse> answer(AskRequest request, String username, RequestDeadline deadline) {
+        AskResponse cached;
+        try {
+            cached = askLanes.serveFromCache(() -> askService.getCachedAnswer(request, username));
+        } catch (RuntimeException e) {
+            // Fail the answer rather than the request, so that retries waiting on it fail too
+            return CompletableFuture.failedFuture(e);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        if (deadline.isExpired()) {
+            deadlineMetrics.recordEarlyReject();
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Request deadline exceeded before processing started"));
+        }
+
+        CompletableFuture<AskResponse> answer = new CompletableFuture<>();
+        try {
+            askLanes.submitUpstream(() -> {
+                try {
+                    if (deadline.isExpired()) {
+                        // Timed out while queued; the client has had its 504 already
+                        deadlineMetrics.recordQueueExpiry();
+                        answer.completeExceptionally(new DeadlineExceededException("Request deadline exceeded while queued"));
+                        return;
+                    }
+                    answer.complete(askService.getUpstreamAnswer(request, username, deadline));
+                } catch (Exception e) {
+                    answer.completeExceptionally(e);
+                }
+            });
+        } catch (LaneSaturatedException e) {
+            answer.completeExceptionally(e);
+        }
+        return answer;
+    }
+
+    /**
+     * Answers the request when the answer is ready, or with 504 when the request's deadline runs out first
+     *
+     * @param gzip Whether the client accepts a gzip-compressed body
+     * @param cancelOnDisconnect Whether the client going away stops the computation
+     * @param replayed Whether the answer was computed for an earlier request with the same Idempotency-Key
+     */
+    private DeferredResult<ResponseEntity<?>> respond(CompletableFuture<AskResponse> answer, RequestDeadline deadline,
+                                                      boolean gzip, boolean cancelOnDisconnect, boolean replayed) {
+        DeferredResult<ResponseEntity<?>> result = answer.isDone() ? new DeferredResult<>()
+                : new DeferredResult<>(Math.max(1, deadline.remainingMs()));
+        result.onTimeout(() -> {
+            if (result.setErrorResult(new DeadlineExceededException("Request deadline exceeded"))) {
+                deadlineMetrics.recordResponseTimeout();
+            }
+            deadline.cancel();
+        });
+        result.onError(error -> {
+            // Usually the client closing the connection
+            if (!result.isSetOrExpired()) {
+                deadlineMetrics.recordDisconnect();
+            }
+            if (cancelOnDisconnect) {
+                deadline.cancel();
+            }
+        });
+
+        answer.whenComplete((response, error) -> {
+            if (error != null) {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                result.setResult(answerResponse(response, gzip, replayed));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cached answers are sent as their stored encoded body; fresh ones are serialized, and compressed if large, by Spring
+     */
+    private ResponseEntity<?> answerResponse(AskResponse response, boolean gzip, boolean replayed) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (replayed) {
+            builder.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        CachedAnswer cached = response.cachedAnswer();
+        return cached == null ? builder.body(response) : encodedResponse(builder, cached.encoded(this::encodeAnswer), gzip);
+    }
+
+    private static ResponseEntity<byte[]> encodedResponse(ResponseEntity.BodyBuilder builder, CachedAnswer.Encoded encoded, boolean gzip) {
+        builder.contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip && encoded.gzipped() != null) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").eTag(encoded.gzipEtag()).body(encoded.gzipped());
+        }
+        return builder.eTag(encoded.etag()).body(encoded.body());
+    }
+
+    private byte[] encodeAnswer(String answer) {
+        return jsonResponseWriter.encode(new AskResponse(answer));
+    }
+
+    // Whether Accept-Encoding allows gzip: listed by name, or else covered by *, without q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].replace(" ", "");
+                if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                    accepted = false;
+                }
+            }
+            if (name.equalsIgnoreCase("gzip")) {
+                gzip = accepted;
+            } else if (name.equals("*")) {
+                any = accepted;
+            }
+        }
+        return gzip != null ? gzip : any != null && any;
+    }
+
+    /**
+     * Answers several questions with one authenticated request.
+     * Answers are streamed as NDJSON, one {@link AskBatchItem} per line in question order,
+     * each written as soon as it and all before it are ready.
+     */
+    @PostMapping("/ask/batch")
+    public ResponseEntity<?> askBatch(
+            @RequestParam(name = "username", required = false) String username,
+            @Valid @RequestBody AskBatchRequest request,
+            @RequestAttribute(RequestDeadline.REQUEST_ATTRIBUTE) RequestDeadline deadline) {
+        ResponseEntity<?> rejected = validateUsername(username);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        // The filter counted this request once; every further question counts against the rate limit too
+        nonceService.chargeRequests(username, request.getQuestions().size() - 1);
+
+        List<CompletableFuture<AskBatchItem>> answers = askBatchService.answerAll(request.getQuestions(), username, deadline);
+        StreamingResponseBody body = out -> streamInOrder(out, answers, deadline);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private void streamInOrder(OutputStream out, List<CompletableFuture<AskBatchItem>> answers,
+                               RequestDeadline deadline) throws IOException {
+        boolean timedOut = false;
+        try {
+            for (int i = 0; i < answers.size(); i++) {
+                AskBatchItem item;
+                try {
+                    item = answers.get(i).get(deadline.remainingMs(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    timedOut = true;
+                    item = AskBatchItem.failed(i, "Request deadline exceeded");
+                } catch (ExecutionException e) {
+                    item = AskBatchItem.failed(i, "Sorry, I couldn't process that question.");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while streaming batch answers", e);
+                }
+                jsonResponseWriter.writeLine(out, item);
+                out.flush();
+            }
+            if (timedOut) {
+                deadlineMetrics.recordResponseTimeout();
+            }
+        } catch (IOException e) {
+            // Usually the client closing the connection
+            deadlineMetrics.recordDisconnect();
+            throw e;
+        } finally {
+            // Stops whatever is still queued or in flight for this batch
+            deadline.cancel();
+        }
+    }
+
+    private static DeferredResult<ResponseEntity<?>> completed(ResponseEntity<?> response) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    private static boolean isValidIdempotencyKey(String idempotencyKey) {
+        return !idempotencyKey.isEmpty() && idempotencyKey.length() <= 255
+                && idempotencyKey.chars().allMatch(c -> c >= 0x20 && c < 0x7f);
+    }
+
+    private ResponseEntity<?> badRequest(String message) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonResponseWriter.staticErrorBody(message));
+    }
+
+    private ResponseEntity<?> validateUsername(String username) {
         // Validate username length
         if (username == null || username.trim().isEmpty() || username.length() < 3 || username.length() > 15) {
-            ErrorResponse error = new ErrorResponse("Username must be between 3 and 15 characters");
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(error));
+            return badRequest("Username must be between 3 and 15 characters");
         }
         
         // Get authenticated username from JWT token
@@ -41,13 +350,11 @@ public class AskController {
         
         // Check if username in request matches the one in JWT token
         if (!username.equals(authenticatedUsername)) {
-            ErrorResponse error = new ErrorResponse("Username in request does not match authenticated user");
             return ResponseEntity
                     .status(HttpStatus.FORBIDDEN)
-                    .body(gson.toJson(error));
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(jsonResponseWriter.staticErrorBody("Username in request does not match authenticated user"));
         }
-        
-        AskResponse response = askService.getAnswer(request, username);
-        return ResponseEntity.ok(response);
+        return null;
     }
 }
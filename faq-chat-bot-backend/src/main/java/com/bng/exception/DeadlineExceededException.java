@@ -0,0 +1,15 @@
+package com.bng.exception;
+
+/**
+ * Thrown when a request runs out of its time budget, or is rejected because it cannot finish within it
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
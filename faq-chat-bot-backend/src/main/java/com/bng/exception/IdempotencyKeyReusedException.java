@@ -0,0 +1,11 @@
+package com.bng.exception;
+
+/**
+ * Thrown when a client sends an Idempotency-Key it already used for a different question
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,6 @@
 package com.bng.exception;
 
-import com.bng.model.ErrorResponse;
-import com.google.gson.Gson;
+import com.bng.util.JsonResponseWriter;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -15,16 +14,16 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationExceptionHandler implements AuthenticationEntryPoint {
 
-    private final Gson gson = new Gson();
+    private final JsonResponseWriter jsonResponseWriter;
+
+    public JwtAuthenticationExceptionHandler(JsonResponseWriter jsonResponseWriter) {
+        this.jsonResponseWriter = jsonResponseWriter;
+    }
 
     @Override
     public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException)
             throws IOException, ServletException {
         
-        response.setStatus(HttpStatus.UNAUTHORIZED.value());
-        response.setContentType("application/json");
-        
-        ErrorResponse errorResponse = new ErrorResponse("Unauthorized: JWT authentication failed");
-        response.getWriter().write(gson.toJson(errorResponse));
+        jsonResponseWriter.writeStaticError(response, HttpStatus.UNAUTHORIZED, "Unauthorized: JWT authentication failed");
     }
 } 
\ No newline at end of file
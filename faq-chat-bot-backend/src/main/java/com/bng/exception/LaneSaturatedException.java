@@ -0,0 +1,18 @@
+package com.bng.exception;
+
+/**
+ * Thrown when an execution lane is full, so the request is refused instead of queued
+ */
+public class LaneSaturatedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LaneSaturatedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,78 @@
+package com.bng.model;
+
+import java.util.List;
+
+/**
+ * Mergeable state of one node's analytics window, as served by GET /api/analytics/sketch.
+ * The sketches are binary and travel as base64; sketches from several nodes can be combined with
+ * {@code ChatAnalyticsService.summarize}.
+ */
+public class AnalyticsSketch {
+    private long windowMinutes;
+    private byte[] questionCounts;
+    private byte[] cacheHitCounts;
+    private List<String> candidates;
+    private String day;
+    private byte[] usersToday;
+
+    public AnalyticsSketch() {
+    }
+
+    public AnalyticsSketch(long windowMinutes, byte[] questionCounts, byte[] cacheHitCounts, List<String> candidates,
+                           String day, byte[] usersToday) {
+        this.windowMinutes = windowMinutes;
+        this.questionCounts = questionCounts;
+        this.cacheHitCounts = cacheHitCounts;
+        this.candidates = candidates;
+        this.day = day;
+        this.usersToday = usersToday;
+    }
+
+    public long getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    public void setWindowMinutes(long windowMinutes) {
+        this.windowMinutes = windowMinutes;
+    }
+
+    public byte[] getQuestionCounts() {
+        return questionCounts;
+    }
+
+    public void setQuestionCounts(byte[] questionCounts) {
+        this.questionCounts = questionCounts;
+    }
+
+    public byte[] getCacheHitCounts() {
+        return cacheHitCounts;
+    }
+
+    public void setCacheHitCounts(byte[] cacheHitCounts) {
+        this.cacheHitCounts = cacheHitCounts;
+    }
+
+    public List<String> getCandidates() {
+        return candidates;
+    }
+
+    public void setCandidates(List<String> candidates) {
+        this.candidates = candidates;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    public byte[] getUsersToday() {
+        return usersToday;
+    }
+
+    public void setUsersToday(byte[] usersToday) {
+        this.usersToday = usersToday;
+    }
+}
@@ -0,0 +1,63 @@
+package com.bng.model;
+
+import java.util.List;
+
+/**
+ * Response of GET /api/analytics/summary. All figures are sketch estimates.
+ */
+public class AnalyticsSummary {
+    private long windowMinutes;
+    private long questions;
+    private double cacheHitRate;
+    private long distinctUsersToday;
+    private List<QuestionStats> topQuestions;
+
+    public AnalyticsSummary(long windowMinutes, long questions, double cacheHitRate, long distinctUsersToday,
+                            List<QuestionStats> topQuestions) {
+        this.windowMinutes = windowMinutes;
+        this.questions = questions;
+        this.cacheHitRate = cacheHitRate;
+        this.distinctUsersToday = distinctUsersToday;
+        this.topQuestions = topQuestions;
+    }
+
+    public long getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    public void setWindowMinutes(long windowMinutes) {
+        this.windowMinutes = windowMinutes;
+    }
+
+    public long getQuestions() {
+        return questions;
+    }
+
+    public void setQuestions(long questions) {
+        this.questions = questions;
+    }
+
+    public double getCacheHitRate() {
+        return cacheHitRate;
+    }
+
+    public void setCacheHitRate(double cacheHitRate) {
+        this.cacheHitRate = cacheHitRate;
+    }
+
+    public long getDistinctUsersToday() {
+        return distinctUsersToday;
+    }
+
+    public void setDistinctUsersToday(long distinctUsersToday) {
+        this.distinctUsersToday = distinctUsersToday;
+    }
+
+    public List<QuestionStats> getTopQuestions() {
+        return topQuestions;
+    }
+
+    public void setTopQuestions(List<QuestionStats> topQuestions) {
+        this.topQuestions = topQuestions;
+    }
+}
@@ -0,0 +1,11 @@
+package com.bng.model;
+
+/**
+ * Where the answer to a logged question came from
+ */
+public enum AnswerSource {
+    CACHE,
+    UPSTREAM,
+    // Canned reply of the local off-topic classifier; such entries are never used to train it
+    CLASSIFIER
+}
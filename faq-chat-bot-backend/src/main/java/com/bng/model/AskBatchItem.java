@@ -0,0 +1,48 @@
+package com.bng.model;
+
+/**
+ * One line of a batch answer stream: the answer to the question at {@code index}, or why there is none
+ */
+public class AskBatchItem {
+    private int index;
+    private String answer;
+    private String error;
+
+    public AskBatchItem(int index, String answer, String error) {
+        this.index = index;
+        this.answer = answer;
+        this.error = error;
+    }
+
+    public static AskBatchItem answered(int index, String answer) {
+        return new AskBatchItem(index, answer, null);
+    }
+
+    public static AskBatchItem failed(int index, String error) {
+        return new AskBatchItem(index, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public void setAnswer(String answer) {
+        this.answer = answer;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
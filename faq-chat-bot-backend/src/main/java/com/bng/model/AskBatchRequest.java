@@ -0,0 +1,24 @@
+package com.bng.model;
+
+import com.bng.validation.EnglishLanguage;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class AskBatchRequest {
+    @NotEmpty(message = "Questions must not be empty")
+    @Size(max = 20, message = "No more than 20 questions can be asked at once")
+    private List<@NotBlank(message = "Question must not be blank")
+                 @Size(max = 100, message = "Question must not exceed 100 characters")
+                 @EnglishLanguage String> questions;
+
+    public List<String> getQuestions() {
+        return questions;
+    }
+
+    public void setQuestions(List<String> questions) {
+        this.questions = questions;
+    }
+}
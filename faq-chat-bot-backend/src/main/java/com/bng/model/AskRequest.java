@@ -11,6 +11,9 @@ public class AskRequest {
     @EnglishLanguage
     private String question;
 
+    // Whether the question refers to the user's previous questions, which are then sent along with it
+    private boolean followUp;
+
     public String getQuestion() {
         return question;
     }
@@ -18,4 +21,12 @@ public class AskRequest {
     public void setQuestion(String question) {
         this.question = question;
     }
+
+    public boolean isFollowUp() {
+        return followUp;
+    }
+
+    public void setFollowUp(boolean followUp) {
+        this.followUp = followUp;
+    }
 }
@@ -1,17 +1,33 @@
 package com.bng.model;
 
+import com.bng.util.CachedAnswer;
+
 public class AskResponse {
     private String answer;
 
+    // The cache entry the answer came from, whose encoded body can be sent as is; not part of the JSON
+    private CachedAnswer cachedAnswer;
+
     public AskResponse(String answer) {
         this.answer = answer;
     }
 
+    public static AskResponse fromCache(CachedAnswer cachedAnswer) {
+        AskResponse response = new AskResponse(cachedAnswer.getAnswer());
+        response.cachedAnswer = cachedAnswer;
+        return response;
+    }
+
     public String getAnswer() {
         return answer;
     }
 
     public void setAnswer(String answer) {
         this.answer = answer;
+        this.cachedAnswer = null;
+    }
+
+    public CachedAnswer cachedAnswer() {
+        return cachedAnswer;
     }
 }
@@ -8,6 +8,7 @@ public class ChatLog {
     private String question;
     private String answer;
     private LocalDateTime timestamp;
+    private AnswerSource source;
 
     public ChatLog() {
     }
@@ -58,4 +59,15 @@ public class ChatLog {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
+
+    /**
+     * @return Where the answer came from, or null for entries written before this was recorded
+     */
+    public AnswerSource getSource() {
+        return source;
+    }
+
+    public void setSource(AnswerSource source) {
+        this.source = source;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.bng.model;
+
+/**
+ * Approximate traffic for one question in the analytics window
+ */
+public class QuestionStats {
+    private String question;
+    private long count;
+    private double cacheHitRate;
+
+    public QuestionStats(String question, long count, double cacheHitRate) {
+        this.question = question;
+        this.count = count;
+        this.cacheHitRate = cacheHitRate;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(String question) {
+        this.question = question;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getCacheHitRate() {
+        return cacheHitRate;
+    }
+
+    public void setCacheHitRate(double cacheHitRate) {
+        this.cacheHitRate = cacheHitRate;
+    }
+}
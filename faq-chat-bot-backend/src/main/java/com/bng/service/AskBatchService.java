@@ -0,0 +1,17 @@
+package com.bng.service;
+
+import com.bng.model.AskBatchItem;
+import com.bng.util.RequestDeadline;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AskBatchService {
+    /**
+     * Answers several questions for one user: all cache lookups happen up front, and the misses
+     * are sent to the upstream with bounded parallelism
+     *
+     * @return One future per question, in question order; futures never complete exceptionally
+     */
+    List<CompletableFuture<AskBatchItem>> answerAll(List<String> questions, String username, RequestDeadline deadline);
+}
@@ -0,0 +1,92 @@
+package com.bng.service;
+
+import com.bng.exception.LaneSaturatedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkheads for /api/ask.
+ * Cache hits run inline on the request thread and never wait; requests that need the upstream go to
+ * a bounded executor of their own, which refuses work with {@link LaneSaturatedException} once its
+ * workers are busy and its queue is full. An upstream brownout therefore fills only the upstream lane.
+ * <p>
+ * Metrics, tagged by lane: {@code ask.lane.active} and {@code ask.lane.queue.depth} for both lanes (the cache
+ * lane never queues), {@code ask.lane.wait} (time queued before starting) and {@code ask.lane.rejected}
+ * for the upstream lane.
+ */
+@Component
+public class AskLanes {
+
+    private final ThreadPoolExecutor upstreamExecutor;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger cacheActive = new AtomicInteger();
+    private final Timer upstreamWait;
+    private final Counter upstreamRejected;
+
+    public AskLanes(MeterRegistry meterRegistry,
+                    @Value("${ask.lanes.upstream.threads:32}") int upstreamThreads,
+                    @Value("${ask.lanes.upstream.queue-capacity:64}") int upstreamQueueCapacity,
+                    @Value("${ask.lanes.upstream.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.upstreamExecutor = new ThreadPoolExecutor(upstreamThreads, upstreamThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(upstreamQueueCapacity),
+                r -> new Thread(r, "ask-upstream-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("ask.lane.active", cacheActive, AtomicInteger::get).tag("lane", "cache").register(meterRegistry);
+        Gauge.builder("ask.lane.queue.depth", this, lanes -> 0).tag("lane", "cache").register(meterRegistry);
+        Gauge.builder("ask.lane.active", upstreamExecutor, ThreadPoolExecutor::getActiveCount).tag("lane", "upstream").register(meterRegistry);
+        Gauge.builder("ask.lane.queue.depth", upstreamExecutor, executor -> executor.getQueue().size()).tag("lane", "upstream").register(meterRegistry);
+        this.upstreamWait = Timer.builder("ask.lane.wait").tag("lane", "upstream").register(meterRegistry);
+        this.upstreamRejected = Counter.builder("ask.lane.rejected").tag("lane", "upstream").register(meterRegistry);
+    }
+
+    /**
+     * Runs a cache lookup on the calling thread
+     */
+    public <T> T serveFromCache(Supplier<T> lookup) {
+        cacheActive.incrementAndGet();
+        try {
+            return lookup.get();
+        } finally {
+            cacheActive.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues work that has to wait on the upstream
+     *
+     * @throws LaneSaturatedException If the lane has no free worker and no room left in its queue
+     */
+    public void submitUpstream(Runnable task) {
+        long queuedAt = System.nanoTime();
+        try {
+            upstreamExecutor.execute(() -> {
+                upstreamWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                task.run();
+            });
+        } catch (RejectedExecutionException e) {
+            upstreamRejected.increment();
+            throw new LaneSaturatedException("Too many questions are waiting for an answer, please retry shortly", retryAfterSeconds);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        upstreamExecutor.shutdownNow();
+    }
+}
@@ -2,7 +2,45 @@ package com.bng.service;
 
 import com.bng.model.AskRequest;
 import com.bng.model.AskResponse;
+import com.bng.util.CachedAnswer;
+import com.bng.util.RequestDeadline;
 
 public interface AskService {
-    AskResponse getAnswer(AskRequest request, String username) throws Exception;
+    /**
+     * Answers from the cache, or else from the upstream
+     *
+     * @param deadline Time budget of the request; the upstream call is abandoned when it runs out
+     * @throws com.bng.exception.DeadlineExceededException If the answer cannot be produced in time
+     */
+    AskResponse getAnswer(AskRequest request, String username, RequestDeadline deadline) throws Exception;
+
+    /**
+     * Answers without blocking on the upstream: from the cache, or with the canned reply
+     * if the question is confidently off-topic
+     *
+     * @return The answer, or null if the upstream has to be asked
+     */
+    AskResponse getCachedAnswer(AskRequest request, String username);
+
+    /**
+     * Looks the question up in the cache without logging it or asking anyone
+     *
+     * @return The cached answer for the user, or else the shared one, or null if there is none
+     */
+    CachedAnswer findCachedAnswer(AskRequest request, String username);
+
+    /**
+     * Asks the upstream, for a question that {@link #getCachedAnswer} could not answer
+     *
+     * @param deadline Time budget of the request; the upstream call is abandoned when it runs out
+     * @throws com.bng.exception.DeadlineExceededException If the answer cannot be produced in time
+     */
+    AskResponse getUpstreamAnswer(AskRequest request, String username, RequestDeadline deadline) throws Exception;
+
+    /**
+     * Computes a user-independent answer and stores it in the shared cache tier
+     *
+     * @return The answer, or null if the upstream could not provide one
+     */
+    String precomputeAnswer(String question) throws Exception;
 }
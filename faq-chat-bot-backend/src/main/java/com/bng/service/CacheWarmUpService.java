@@ -0,0 +1,225 @@
+package com.bng.service;
+
+import com.bng.model.ChatLog;
+import com.bng.model.Faq;
+import com.bng.util.AnswerSnapshot;
+import com.bng.util.CacheUtil;
+import com.bng.util.FaqLoader;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the shared answer tier warm across restarts.
+ * On startup the last snapshot is loaded before traffic arrives; once the application is ready,
+ * answers for the FAQ questions and the most frequent logged questions are precomputed
+ * in the background and a fresh snapshot is written.
+ */
+@Service
+public class CacheWarmUpService {
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmUpService.class);
+    private static final String LOG_FILE_PREFIX = "chat_logs_";
+
+    private final AskService askService;
+    private final FaqLoader faqLoader;
+    private final CacheUtil cacheUtil;
+    private final ObjectMapper objectMapper;
+
+    private final Path logDir;
+    private final Path snapshotPath;
+    private final boolean enabled;
+    private final int topN;
+    private final int historyDays;
+    private final int concurrency;
+    private final long permitIntervalNanos;
+
+    // Next time an upstream call may start, for pacing precomputation
+    private final AtomicLong nextPermitNanos = new AtomicLong(System.nanoTime());
+
+    public CacheWarmUpService(AskService askService, FaqLoader faqLoader, CacheUtil cacheUtil, ObjectMapper objectMapper,
+                              @Value("${chat-log.dir:logs}") String logDir,
+                              @Value("${cache.snapshot.path:cache/answers.snapshot}") String snapshotPath,
+                              @Value("${cache.warm-up.enabled:true}") boolean enabled,
+                              @Value("${cache.warm-up.top-n:20}") int topN,
+                              @Value("${cache.warm-up.history-days:7}") int historyDays,
+                              @Value("${cache.warm-up.concurrency:2}") int concurrency,
+                              @Value("${cache.warm-up.rate-per-second:2}") double ratePerSecond) {
+        this.askService = askService;
+        this.faqLoader = faqLoader;
+        this.cacheUtil = cacheUtil;
+        this.objectMapper = objectMapper;
+        this.logDir = Paths.get(logDir);
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.enabled = enabled;
+        this.topN = topN;
+        this.historyDays = historyDays;
+        this.concurrency = concurrency;
+        this.permitIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            logger.info("No answer snapshot at {}, starting with an empty cache", snapshotPath);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, String> entries = AnswerSnapshot.read(snapshotPath);
+            // The snapshot is the persistent copy, so appending it to the disk tier again would only grow its log
+            entries.forEach(cacheUtil::putHeap);
+            logger.info("Loaded {} precomputed answers from {} in {} ms",
+                    entries.size(), snapshotPath, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable answer snapshot {}", snapshotPath, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmUp() {
+        if (!enabled) {
+            return;
+        }
+        Thread worker = new Thread(this::warmUp, "cache-warm-up");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void warmUp() {
+        List<String> missing = new ArrayList<>();
+        for (String question : collectQuestions()) {
+            if (cacheUtil.get(CacheUtil.sharedKey(question)) == null) {
+                missing.add(question);
+            }
+        }
+        logger.info("Cache warm-up: precomputing {} answers", missing.size());
+
+        AtomicInteger computed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> new Thread(r, "cache-warm-up-worker"));
+        for (String question : missing) {
+            executor.execute(() -> {
+                try {
+                    awaitRatePermit();
+                    if (askService.precomputeAnswer(question) != null) {
+                        computed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logger.warn("Cache warm-up failed for question: {}", question, e);
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            Map<String, String> shared = cacheUtil.sharedEntries();
+            AnswerSnapshot.write(snapshotPath, shared);
+            logger.info("Cache warm-up: computed {} answers, snapshot of {} written to {}", computed.get(), shared.size(), snapshotPath);
+        } catch (IOException e) {
+            logger.error("Failed to write answer snapshot", e);
+        }
+    }
+
+    /**
+     * FAQ questions first, then the most frequent questions from recent chat logs
+     */
+    private List<String> collectQuestions() {
+        Map<String, String> questions = new LinkedHashMap<>();
+        for (Faq faq : faqLoader.getFaqs()) {
+            questions.putIfAbsent(CacheUtil.sharedKey(faq.getQuestion()), faq.getQuestion());
+        }
+        for (String question : mineFrequentQuestions(logDir)) {
+            questions.putIfAbsent(CacheUtil.sharedKey(question), question);
+        }
+        return new ArrayList<>(questions.values());
+    }
+
+    /**
+     * The top-N questions of the newest history-days chat logs in the directory, most frequent first.
+     * Variants differing only in case and whitespace count as one; questions answered with the fallback text are skipped.
+     */
+    List<String> mineFrequentQuestions(Path logDir) {
+        if (!Files.isDirectory(logDir) || topN <= 0) {
+            return List.of();
+        }
+
+        List<Path> logFiles;
+        try (Stream<Path> files = Files.list(logDir)) {
+            // File names end in yyyy-MM-dd, so reverse name order is newest first
+            logFiles = files
+                    .filter(p -> p.getFileName().toString().startsWith(LOG_FILE_PREFIX) && p.getFileName().toString().endsWith(".json"))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .limit(historyDays)
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("Could not list chat logs in {}", logDir, e);
+            return List.of();
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, String> firstSeen = new HashMap<>();
+        for (Path logFile : logFiles) {
+            try (MappingIterator<ChatLog> logs = objectMapper.readerFor(ChatLog.class).readValues(logFile.toFile())) {
+                while (logs.hasNextValue()) {
+                    ChatLog log = logs.nextValue();
+                    if (log.getQuestion() == null || OpenAiClient.FALLBACK_ANSWER.equals(log.getAnswer())) {
+                        continue;
+                    }
+                    String key = CacheUtil.sharedKey(log.getQuestion());
+                    counts.merge(key, 1, Integer::sum);
+                    firstSeen.putIfAbsent(key, log.getQuestion().trim());
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable chat log {}", logFile, e);
+            }
+        }
+
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(topN)
+                .map(entry -> firstSeen.get(entry.getKey()))
+                .toList();
+    }
+
+    private void awaitRatePermit() throws InterruptedException {
+        long now = System.nanoTime();
+        long previous = nextPermitNanos.getAndUpdate(next -> Math.max(next, now) + permitIntervalNanos);
+        long waitNanos = Math.max(previous, now) - now;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.bng.service;
+
+import com.bng.model.AnalyticsSketch;
+import com.bng.model.AnswerSource;
+import com.bng.model.AnalyticsSummary;
+import com.bng.model.QuestionStats;
+import com.bng.util.CacheUtil;
+import com.bng.util.CountMinSketch;
+import com.bng.util.HyperLogLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming analytics over the questions {@link ChatLogService} logs, in fixed memory.
+ * The window is a ring of time buckets, each holding Count-Min Sketches of asks and cache hits per
+ * normalized question plus a bounded set of heavy-hitter candidates; buckets older than the window are
+ * reused. Distinct users are counted per calendar day with a HyperLogLog.
+ * <p>
+ * {@link #sketch()} exports the window in mergeable form, so that the summary of several nodes is
+ * {@link #summarize(List, int)} over their sketches.
+ */
+@Service
+public class ChatAnalyticsService {
+
+    private final int bucketCount;
+    private final long bucketMillis;
+    private final int candidateCapacity;
+    private final int sketchDepth;
+    private final int sketchWidth;
+    private final int userPrecision;
+    private final Bucket[] buckets;
+
+    private final HyperLogLog usersToday;
+    private LocalDate today;
+
+    public ChatAnalyticsService(@Value("${analytics.window-minutes:60}") int windowMinutes,
+                                @Value("${analytics.bucket-minutes:5}") int bucketMinutes,
+                                @Value("${analytics.candidates-per-bucket:50}") int candidateCapacity,
+                                @Value("${analytics.sketch.depth:4}") int sketchDepth,
+                                @Value("${analytics.sketch.width:2048}") int sketchWidth,
+                                @Value("${analytics.users.precision:14}") int userPrecision) {
+        this.bucketCount = Math.max(1, windowMinutes / bucketMinutes);
+        this.bucketMillis = TimeUnit.MINUTES.toMillis(bucketMinutes);
+        this.candidateCapacity = candidateCapacity;
+        this.sketchDepth = sketchDepth;
+        this.sketchWidth = sketchWidth;
+        this.userPrecision = userPrecision;
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(new CountMinSketch(sketchDepth, sketchWidth), new CountMinSketch(sketchDepth, sketchWidth));
+        }
+        this.usersToday = new HyperLogLog(userPrecision);
+    }
+
+    @EventListener
+    public void onChatLogged(ChatLoggedEvent event) {
+        record(event.username(), event.question(), event.source() == AnswerSource.CACHE, event.at());
+    }
+
+    synchronized void record(String username, String question, boolean cacheHit, Instant at) {
+        String key = CacheUtil.normalizeQuestion(question);
+        Bucket bucket = bucketFor(at.toEpochMilli() / bucketMillis);
+        if (bucket != null) {
+            bucket.asked.add(key, 1);
+            if (cacheHit) {
+                bucket.hits.add(key, 1);
+            }
+            bucket.offerCandidate(key, bucket.asked.estimate(key), candidateCapacity);
+        }
+
+        LocalDate day = LocalDate.ofInstant(at, ZoneId.systemDefault());
+        if (!day.equals(today)) {
+            usersToday.clear();
+            today = day;
+        }
+        usersToday.add(username);
+    }
+
+    public AnalyticsSketch sketch() {
+        return sketch(Instant.now());
+    }
+
+    /**
+     * Merges the buckets still inside the window at {@code now} into one mergeable sketch
+     */
+    synchronized AnalyticsSketch sketch(Instant now) {
+        long current = now.toEpochMilli() / bucketMillis;
+        CountMinSketch asked = new CountMinSketch(sketchDepth, sketchWidth);
+        CountMinSketch hits = new CountMinSketch(sketchDepth, sketchWidth);
+        Set<String> candidates = new LinkedHashSet<>();
+        for (Bucket bucket : buckets) {
+            if (bucket.index > current - bucketCount && bucket.index <= current) {
+                asked.merge(bucket.asked);
+                hits.merge(bucket.hits);
+                candidates.addAll(bucket.candidates.keySet());
+            }
+        }
+        boolean countsToday = LocalDate.ofInstant(now, ZoneId.systemDefault()).equals(today);
+        HyperLogLog users = countsToday ? usersToday : new HyperLogLog(userPrecision);
+        return new AnalyticsSketch(windowMinutes(), asked.toBytes(), hits.toBytes(), new ArrayList<>(candidates),
+                countsToday ? today.toString() : null, users.toBytes());
+    }
+
+    public AnalyticsSummary summary(int top) {
+        return summarize(List.of(sketch()), top);
+    }
+
+    /**
+     * Combines sketches, typically one per node, into top questions, hit rates and distinct users.
+     * Distinct users are only combined across sketches of the latest day present.
+     */
+    public static AnalyticsSummary summarize(List<AnalyticsSketch> sketches, int top) {
+        CountMinSketch asked = null;
+        CountMinSketch hits = null;
+        HyperLogLog users = null;
+        Set<String> candidates = new LinkedHashSet<>();
+        String latestDay = sketches.stream().map(AnalyticsSketch::getDay).filter(d -> d != null)
+                .max(Comparator.naturalOrder()).orElse(null);
+        long windowMinutes = 0;
+        for (AnalyticsSketch sketch : sketches) {
+            asked = merged(asked, CountMinSketch.fromBytes(sketch.getQuestionCounts()));
+            hits = merged(hits, CountMinSketch.fromBytes(sketch.getCacheHitCounts()));
+            candidates.addAll(sketch.getCandidates());
+            windowMinutes = Math.max(windowMinutes, sketch.getWindowMinutes());
+            if (latestDay != null && latestDay.equals(sketch.getDay())) {
+                HyperLogLog nodeUsers = HyperLogLog.fromBytes(sketch.getUsersToday());
+                if (users == null) {
+                    users = nodeUsers;
+                } else {
+                    users.merge(nodeUsers);
+                }
+            }
+        }
+        if (asked == null) {
+            return new AnalyticsSummary(0, 0, 0, 0, List.of());
+        }
+
+        List<QuestionStats> topQuestions = new ArrayList<>();
+        for (String question : candidates) {
+            long count = asked.estimate(question);
+            topQuestions.add(new QuestionStats(question, count, hitRate(hits.estimate(question), count)));
+        }
+        topQuestions.sort(Comparator.comparingLong(QuestionStats::getCount).reversed());
+        if (topQuestions.size() > top) {
+            topQuestions = new ArrayList<>(topQuestions.subList(0, top));
+        }
+        return new AnalyticsSummary(windowMinutes, asked.total(), hitRate(hits.total(), asked.total()),
+                users != null ? users.estimate() : 0, topQuestions);
+    }
+
+    private long windowMinutes() {
+        return TimeUnit.MILLISECONDS.toMinutes(bucketMillis * bucketCount);
+    }
+
+    /**
+     * @return The bucket for the period, recycled if it held an older one, or null if the period has already left the window
+     */
+    private Bucket bucketFor(long index) {
+        Bucket bucket = buckets[(int) (index % bucketCount)];
+        if (bucket.index > index) {
+            return null;
+        }
+        if (bucket.index != index) {
+            bucket.reset(index);
+        }
+        return bucket;
+    }
+
+    private static CountMinSketch merged(CountMinSketch into, CountMinSketch sketch) {
+        if (into == null) {
+            return sketch;
+        }
+        into.merge(sketch);
+        return into;
+    }
+
+    // Both counts are overestimates, so the ratio is approximate and is capped at 1
+    private static double hitRate(long hits, long asked) {
+        return asked == 0 ? 0 : Math.min(1.0, (double) hits / asked);
+    }
+
+    private static class Bucket {
+        private long index = -1;
+        private final CountMinSketch asked;
+        private final CountMinSketch hits;
+        // Heavy-hitter candidates of this bucket and their estimated counts
+        private final Map<String, Long> candidates = new HashMap<>();
+
+        private Bucket(CountMinSketch asked, CountMinSketch hits) {
+            this.asked = asked;
+            this.hits = hits;
+        }
+
+        private void reset(long index) {
+            this.index = index;
+            asked.clear();
+            hits.clear();
+            candidates.clear();
+        }
+
+        /**
+         * Keeps the question if there is room or it is now estimated above the weakest candidate
+         */
+        private void offerCandidate(String question, long estimate, int capacity) {
+            if (candidates.containsKey(question) || candidates.size() < capacity) {
+                candidates.put(question, estimate);
+                return;
+            }
+            Map.Entry<String, Long> weakest = null;
+            for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+                if (weakest == null || entry.getValue() < weakest.getValue()) {
+                    weakest = entry;
+                }
+            }
+            if (estimate > weakest.getValue()) {
+                candidates.remove(weakest.getKey());
+                candidates.put(question, estimate);
+            }
+        }
+    }
+}
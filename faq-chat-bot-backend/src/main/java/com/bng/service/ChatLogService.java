@@ -1,8 +1,12 @@
 package com.bng.service;
 
+import com.bng.model.AnswerSource;
 import com.bng.model.ChatLog;
 
 public interface ChatLogService {
-    void logChat(String username, String question, String answer);
+    /**
+     * Appends the exchange to the day's log and publishes a {@link ChatLoggedEvent} for it
+     */
+    void logChat(String username, String question, String answer, AnswerSource source);
     ChatLog createChatLog(String username, String question, String answer);
 } 
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.bng.service;
+
+import com.bng.model.AnswerSource;
+
+import java.time.Instant;
+
+/**
+ * Published by {@link ChatLogService} for every answered question
+ */
+public record ChatLoggedEvent(String username, String question, String answer, AnswerSource source, Instant at) {
+}
@@ -0,0 +1,220 @@
+package com.bng.service;
+
+import com.bng.model.AnswerSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recent questions and answers per user, for answering follow-up questions.
+ * Each user's last {@code conversation.max-turns} turns are kept in a ring buffer. Once the turns no longer fit
+ * {@code conversation.context-token-budget}, the oldest are folded into a running summary of one short line per
+ * turn, itself capped at a third of the budget, so the context sent upstream stays within the budget however
+ * long a conversation gets. Summaries are made locally and cost no upstream call.
+ * <p>
+ * Conversations idle for {@code conversation.idle-timeout-ms} are dropped, and beyond
+ * {@code conversation.max-users} the least recently active ones are dropped early.
+ * Canned off-topic replies and fallback answers are not remembered.
+ */
+@Component
+public class ConversationStore {
+
+    // Rough size of a token in English text
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int SUMMARY_ANSWER_CHARS = 160;
+
+    private static final String SUMMARY_HEADER = "Summary of the earlier conversation with this user:\n";
+    private static final String TURNS_HEADER = "The latest exchanges, oldest first:\n";
+    private static final String FOLLOW_UP_NOTE = "Answer the new question as a follow-up to this conversation.";
+
+    private final int maxTurns;
+    private final int budgetChars;
+    private final int maxAnswerChars;
+    private final long idleTimeoutMs;
+    // Access order, so the eldest entry is the least recently active conversation
+    private final Map<String, Conversation> conversations;
+
+    public ConversationStore(MeterRegistry meterRegistry,
+                             @Value("${conversation.max-turns:6}") int maxTurns,
+                             @Value("${conversation.context-token-budget:600}") int contextTokenBudget,
+                             @Value("${conversation.idle-timeout-ms:1800000}") long idleTimeoutMs,
+                             @Value("${conversation.max-users:10000}") int maxUsers) {
+        this.maxTurns = maxTurns;
+        this.budgetChars = contextTokenBudget * CHARS_PER_TOKEN;
+        // A single turn may take half of the budget
+        this.maxAnswerChars = budgetChars / 2;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.conversations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                return size() > maxUsers;
+            }
+        };
+        Gauge.builder("conversation.active", this, ConversationStore::size).register(meterRegistry);
+    }
+
+    @EventListener
+    public void onChatLogged(ChatLoggedEvent event) {
+        if (event.source() == AnswerSource.CLASSIFIER || event.answer() == null
+                || OpenAiClient.FALLBACK_ANSWER.equals(event.answer())) {
+            return;
+        }
+        record(event.username(), event.question(), event.answer(), event.at());
+    }
+
+    synchronized void record(String username, String question, String answer, Instant at) {
+        Conversation conversation = conversations.get(username);
+        if (conversation == null || isIdle(conversation, at.toEpochMilli())) {
+            conversation = new Conversation(maxTurns);
+            conversations.put(username, conversation);
+        }
+        conversation.lastActiveMs = at.toEpochMilli();
+        if (conversation.size == maxTurns) {
+            conversation.fold();
+        }
+        conversation.add(new Turn(question, truncate(answer, maxAnswerChars)));
+        while (conversation.size > 1 && conversation.chars() > budgetChars) {
+            conversation.fold();
+        }
+        conversation.trimSummary(budgetChars / 3);
+    }
+
+    /**
+     * @return Whether there is a conversation a follow-up question could refer to
+     */
+    public synchronized boolean hasHistory(String username) {
+        Conversation conversation = conversations.get(username);
+        return conversation != null && !isIdle(conversation, System.currentTimeMillis());
+    }
+
+    /**
+     * @return The user's conversation so far, to send along with a follow-up question, or null if there is none
+     */
+    public String context(String username) {
+        return context(username, Instant.now());
+    }
+
+    synchronized String context(String username, Instant now) {
+        Conversation conversation = conversations.get(username);
+        if (conversation == null || isIdle(conversation, now.toEpochMilli())) {
+            return null;
+        }
+        StringBuilder context = new StringBuilder();
+        conversation.render(context);
+        return context.append(FOLLOW_UP_NOTE).toString();
+    }
+
+    @Scheduled(fixedDelayString = "${conversation.purge-interval-ms:60000}")
+    public void purgeIdle() {
+        purgeIdle(Instant.now());
+    }
+
+    synchronized void purgeIdle(Instant now) {
+        conversations.values().removeIf(conversation -> isIdle(conversation, now.toEpochMilli()));
+    }
+
+    public synchronized int size() {
+        return conversations.size();
+    }
+
+    private boolean isIdle(Conversation conversation, long nowMs) {
+        return nowMs - conversation.lastActiveMs > idleTimeoutMs;
+    }
+
+    static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars - 3) + "...";
+    }
+
+    // The first sentence of an answer, as short as a summary line needs it
+    private static String gist(String answer) {
+        int end = answer.length();
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && (i + 1 == answer.length() || Character.isWhitespace(answer.charAt(i + 1)))) {
+                end = i + 1;
+                break;
+            }
+        }
+        return truncate(answer.substring(0, end).replace('\n', ' ').trim(), SUMMARY_ANSWER_CHARS);
+    }
+
+    private record Turn(String question, String answer) {
+
+        private int chars() {
+            // "Q: " + question + "\nA: " + answer + "\n"
+            return question.length() + answer.length() + 8;
+        }
+    }
+
+    private static final class Conversation {
+        private final Turn[] turns;
+        private int head;
+        private int size;
+        private final Deque<String> summary = new ArrayDeque<>();
+        private int summaryChars;
+        private long lastActiveMs;
+
+        private Conversation(int capacity) {
+            this.turns = new Turn[capacity];
+        }
+
+        private void add(Turn turn) {
+            turns[(head + size) % turns.length] = turn;
+            size++;
+        }
+
+        /**
+         * Replaces the oldest turn by a line of the summary
+         */
+        private void fold() {
+            Turn oldest = turns[head];
+            turns[head] = null;
+            head = (head + 1) % turns.length;
+            size--;
+            String line = "- Asked \"" + oldest.question() + "\", told: " + gist(oldest.answer()) + "\n";
+            summary.addLast(line);
+            summaryChars += line.length();
+        }
+
+        private void trimSummary(int maxChars) {
+            while (summaryChars > maxChars && !summary.isEmpty()) {
+                summaryChars -= summary.removeFirst().length();
+            }
+        }
+
+        private int chars() {
+            int chars = summary.isEmpty() ? 0 : SUMMARY_HEADER.length() + summaryChars;
+            for (int i = 0; i < size; i++) {
+                chars += turns[(head + i) % turns.length].chars();
+            }
+            return chars + TURNS_HEADER.length() + FOLLOW_UP_NOTE.length();
+        }
+
+        private void render(StringBuilder context) {
+            if (!summary.isEmpty()) {
+                context.append(SUMMARY_HEADER);
+                for (String line : summary) {
+                    context.append(line);
+                }
+            }
+            context.append(TURNS_HEADER);
+            for (int i = 0; i < size; i++) {
+                Turn turn = turns[(head + i) % turns.length];
+                context.append("Q: ").append(turn.question()).append("\nA: ").append(turn.answer()).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.bng.service;
+
+import com.bng.exception.IdempotencyKeyReusedException;
+import com.bng.model.AskResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Answers of /api/ask requests that carried an {@code Idempotency-Key}, per user and key.
+ * The first request with a key computes the answer; a retry with the same key attaches to that
+ * computation while it runs and gets the stored answer after it finished, so it never reaches the
+ * upstream again. Failed answers are forgotten, so a retry after a failure starts afresh.
+ * <p>
+ * Entries live {@code idempotency.ttl-ms} from their first request; beyond {@code idempotency.max-entries}
+ * the oldest are dropped early. Metrics: {@code ask.idempotency.requests}, tagged with outcome new, attached
+ * (joined a running computation), replayed (got a stored answer) or conflict (key reused for another question),
+ * and the gauge {@code ask.idempotency.entries}.
+ */
+@Component
+public class IdempotencyStore {
+
+    private final long ttlMs;
+    // Insertion order is expiry order, since every entry lives equally long
+    private final Map<String, Entry> entries;
+
+    private final Counter created;
+    private final Counter attached;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    public IdempotencyStore(MeterRegistry meterRegistry,
+                            @Value("${idempotency.ttl-ms:600000}") long ttlMs,
+                            @Value("${idempotency.max-entries:5000}") int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.created = counter(meterRegistry, "new");
+        this.attached = counter(meterRegistry, "attached");
+        this.replayed = counter(meterRegistry, "replayed");
+        this.conflicts = counter(meterRegistry, "conflict");
+        Gauge.builder("ask.idempotency.entries", this, IdempotencyStore::size).register(meterRegistry);
+    }
+
+    /**
+     * Looks up the answer for the user's key, registering a new one if there is none.
+     * The caller of a {@link Claim#isOwner() owning} claim must compute the answer and pass it to {@link #track}.
+     *
+     * @throws IdempotencyKeyReusedException If the key was used for a different question
+     */
+    public synchronized Claim claim(String username, String idempotencyKey, String question) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        String key = username + "::" + idempotencyKey;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (!entry.question().equals(question)) {
+                conflicts.increment();
+                throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different question");
+            }
+            Outcome outcome = entry.answer().isDone() ? Outcome.REPLAYED : Outcome.ATTACHED;
+            (outcome == Outcome.REPLAYED ? replayed : attached).increment();
+            return new Claim(key, entry.answer(), outcome);
+        }
+        entry = new Entry(question, new CompletableFuture<>(), now + ttlMs);
+        entries.put(key, entry);
+        created.increment();
+        return new Claim(key, entry.answer(), Outcome.NEW);
+    }
+
+    /**
+     * Completes the claim's answer with the outcome of the computation; a failure also removes the entry
+     */
+    public void track(Claim claim, CompletableFuture<AskResponse> computation) {
+        computation.whenComplete((response, error) -> {
+            if (error == null) {
+                claim.answer().complete(response);
+                return;
+            }
+            synchronized (this) {
+                entries.computeIfPresent(claim.key(), (key, entry) -> entry.answer() == claim.answer() ? null : entry);
+            }
+            claim.answer().completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void expire(long now) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && eldest.next().expiresAt() <= now) {
+            eldest.remove();
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("ask.idempotency.requests").tag("outcome", outcome).register(meterRegistry);
+    }
+
+    public enum Outcome {
+        NEW, ATTACHED, REPLAYED
+    }
+
+    /**
+     * A request's view of the answer for its key
+     */
+    public record Claim(String key, CompletableFuture<AskResponse> answer, Outcome outcome) {
+
+        public boolean isOwner() {
+            return outcome == Outcome.NEW;
+        }
+    }
+
+    private record Entry(String question, CompletableFuture<AskResponse> answer, long expiresAt) {
+    }
+}
@@ -0,0 +1,296 @@
+package com.bng.service;
+
+import com.bng.config.LlmRoutingProperties;
+import com.bng.util.RequestDeadline;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One upstream chat-completions endpoint together with the live statistics the router scores it by:
+ * smoothed latency, smoothed error rate, remaining rate-limit quota and in-flight requests.
+ */
+public class LlmEndpoint {
+
+    // How much a fully failing endpoint is penalised relative to its latency
+    private static final double ERROR_PENALTY = 10.0;
+
+    // Ejection threshold for the smoothed error rate
+    private static final double EJECT_ERROR_RATE = 0.5;
+
+    private final String name;
+    private final String url;
+    private final String key;
+    private final String model;
+    private final int maxConcurrency;
+    private final double alpha;
+    private final long cooldownMs;
+
+    private final RestTemplate restTemplate;
+    private final DeadlineAwareRequestFactory requestFactory;
+    private final Semaphore permits;
+
+    // Smoothed statistics, guarded by "this"; a latency of 0 means no samples yet
+    private double ewmaLatencyMs;
+    private double ewmaErrorRate;
+
+    // Remaining requests reported by the upstream, -1 when unknown
+    private volatile long remainingRequests = -1;
+    private volatile long unavailableUntil;
+
+    public LlmEndpoint(LlmRoutingProperties.Endpoint config, double alpha, long cooldownMs) {
+        this.name = config.getName();
+        this.url = config.getUrl();
+        this.key = config.getKey();
+        this.model = config.getModel();
+        this.maxConcurrency = config.getMaxConcurrency();
+        this.alpha = alpha;
+        this.cooldownMs = cooldownMs;
+        this.permits = new Semaphore(maxConcurrency);
+
+        this.requestFactory = new DeadlineAwareRequestFactory(config.getConnectTimeoutMs(), config.getReadTimeoutMs());
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Posts a chat-completions request to this endpoint and records the outcome.
+     * The caller must hold a permit from {@link #tryAcquire()}.
+     *
+     * @param requestBody The request body; the endpoint's own model is filled in
+     * @param deadline Caps the socket timeouts; cancelling it disconnects the call
+     * @return The parsed response body
+     */
+    public Map<String, Object> post(Map<String, Object> requestBody, RequestDeadline deadline) {
+        Map<String, Object> body = new HashMap<>(requestBody);
+        body.put("model", model);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(key);
+
+        long start = System.nanoTime();
+        requestFactory.deadline.set(deadline);
+        try {
+            ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(body, headers), Map.class);
+            recordSuccess(elapsedMs(start), response.getHeaders());
+            return response.getBody();
+        } catch (HttpStatusCodeException ex) {
+            // A rejected request, e.g. malformed or with a bad key, says nothing about the endpoint's health
+            if (isRetryable(ex)) {
+                recordFailure(elapsedMs(start), ex.getStatusCode().value(), ex.getResponseHeaders());
+            }
+            throw ex;
+        } catch (RuntimeException ex) {
+            // A call cut short by the caller's deadline says nothing about the endpoint's health
+            if (!deadline.isExpired()) {
+                recordFailure(elapsedMs(start), 0, null);
+            }
+            throw ex;
+        } finally {
+            requestFactory.deadline.remove();
+            deadline.clearOnCancel();
+        }
+    }
+
+    /**
+     * Whether another endpoint might succeed where this call failed: on server errors, rate limiting and
+     * I/O errors or timeouts. Any other client error would fail the same way everywhere.
+     */
+    public static boolean isRetryable(RuntimeException ex) {
+        if (ex instanceof HttpStatusCodeException statusError) {
+            HttpStatusCode status = statusError.getStatusCode();
+            return status.is5xxServerError() || status.value() == 429;
+        }
+        return ex instanceof ResourceAccessException;
+    }
+
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public boolean tryAcquire(long timeoutMs) throws InterruptedException {
+        return permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int inFlight() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Whether the endpoint is in rotation, i.e. not ejected for errors or an exhausted quota
+     */
+    public boolean isAvailable(long nowMs) {
+        return nowMs >= unavailableUntil;
+    }
+
+    /**
+     * Lower is better: expected latency scaled by current load, error rate and scarce quota
+     */
+    public synchronized double score() {
+        // Endpoints without samples look fast so that they get probed
+        double latency = ewmaLatencyMs == 0 ? 1.0 : ewmaLatencyMs;
+        double score = latency * (inFlight() + 1) * (1 + ERROR_PENALTY * ewmaErrorRate);
+        long remaining = remainingRequests;
+        if (remaining >= 0 && remaining < maxConcurrency) {
+            score *= 4;
+        }
+        return score;
+    }
+
+    synchronized void recordSuccess(long latencyMs, HttpHeaders headers) {
+        ewmaLatencyMs = ewmaLatencyMs == 0 ? latencyMs : ewmaLatencyMs + alpha * (latencyMs - ewmaLatencyMs);
+        ewmaErrorRate -= alpha * ewmaErrorRate;
+        updateQuota(headers);
+    }
+
+    synchronized void recordFailure(long latencyMs, int status, HttpHeaders headers) {
+        // Failures count toward latency too, so that slow timeouts are not mistaken for fast errors
+        ewmaLatencyMs = ewmaLatencyMs == 0 ? latencyMs : ewmaLatencyMs + alpha * (latencyMs - ewmaLatencyMs);
+        ewmaErrorRate += alpha * (1 - ewmaErrorRate);
+
+        long now = System.currentTimeMillis();
+        if (status == 429) {
+            long resetMs = headers == null ? -1 : parseDurationMs(headers.getFirst("x-ratelimit-reset-requests"));
+            unavailableUntil = now + (resetMs > 0 ? resetMs : cooldownMs);
+            remainingRequests = -1;
+        } else if (ewmaErrorRate > EJECT_ERROR_RATE) {
+            // Eject for a cooldown, then let a single request probe it again
+            unavailableUntil = now + cooldownMs;
+            ewmaErrorRate = EJECT_ERROR_RATE;
+        }
+    }
+
+    private void updateQuota(HttpHeaders headers) {
+        String remaining = headers == null ? null : headers.getFirst("x-ratelimit-remaining-requests");
+        if (remaining == null) {
+            return;
+        }
+        try {
+            remainingRequests = Long.parseLong(remaining.trim());
+        } catch (NumberFormatException e) {
+            remainingRequests = -1;
+        }
+        if (remainingRequests == 0) {
+            long resetMs = parseDurationMs(headers.getFirst("x-ratelimit-reset-requests"));
+            unavailableUntil = System.currentTimeMillis() + (resetMs > 0 ? resetMs : cooldownMs);
+            remainingRequests = -1;
+        }
+    }
+
+    /**
+     * Parses OpenAI-style reset durations such as "20ms", "1s" or "6m0s"
+     */
+    static long parseDurationMs(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        long totalMs = 0;
+        double number = 0;
+        double fraction = 0;
+        boolean seenDigit = false;
+        String s = value.trim();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (fraction > 0) {
+                    number += (c - '0') * fraction;
+                    fraction /= 10;
+                } else {
+                    number = number * 10 + (c - '0');
+                }
+                seenDigit = true;
+            } else if (c == '.') {
+                fraction = 0.1;
+            } else if (seenDigit) {
+                if (c == 'm' && i + 1 < s.length() && s.charAt(i + 1) == 's') {
+                    totalMs += (long) number;
+                    i++;
+                } else if (c == 'h') {
+                    totalMs += (long) (number * 3_600_000);
+                } else if (c == 'm') {
+                    totalMs += (long) (number * 60_000);
+                } else if (c == 's') {
+                    totalMs += (long) (number * 1000);
+                } else {
+                    return -1;
+                }
+                number = 0;
+                fraction = 0;
+                seenDigit = false;
+            } else {
+                return -1;
+            }
+        }
+        return seenDigit ? -1 : totalMs;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public synchronized double getEwmaLatencyMs() {
+        return ewmaLatencyMs;
+    }
+
+    public synchronized double getEwmaErrorRate() {
+        return ewmaErrorRate;
+    }
+
+    /**
+     * Lowers the configured timeouts to what is left of the calling request's deadline,
+     * and lets the deadline disconnect the connection when the request is cancelled
+     */
+    private static final class DeadlineAwareRequestFactory extends SimpleClientHttpRequestFactory {
+        // RestTemplate opens the connection on the calling thread, so the deadline can ride along here
+        private final ThreadLocal<RequestDeadline> deadline = new ThreadLocal<>();
+        private final int connectTimeoutMs;
+        private final int readTimeoutMs;
+
+        private DeadlineAwareRequestFactory(int connectTimeoutMs, int readTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            this.readTimeoutMs = readTimeoutMs;
+            setConnectTimeout(connectTimeoutMs);
+            setReadTimeout(readTimeoutMs);
+        }
+
+        @Override
+        protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+            super.prepareConnection(connection, httpMethod);
+            RequestDeadline current = deadline.get();
+            if (current == null) {
+                return;
+            }
+            // A timeout of 0 would mean "wait forever", so an exhausted budget still gets 1ms
+            long remaining = Math.max(1, Math.min(current.remainingMs(), Integer.MAX_VALUE));
+            connection.setConnectTimeout((int) Math.min(remaining, connectTimeoutMs));
+            connection.setReadTimeout((int) Math.min(remaining, readTimeoutMs));
+            current.onCancel(connection::disconnect);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bng.service;
+
+import com.bng.config.LlmRoutingProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads upstream calls across the configured {@link LlmEndpoint}s.
+ * Uses power-of-two-choices on the endpoint score, so a slow or failing endpoint loses
+ * traffic as soon as its statistics degrade, while per-endpoint concurrency limits still apply.
+ */
+@Component
+public class LlmRouter {
+
+    private final List<LlmEndpoint> endpoints;
+    private final long acquireTimeoutMs;
+
+    public LlmRouter(LlmRoutingProperties properties) {
+        if (properties.getEndpoints().isEmpty()) {
+            throw new IllegalStateException("At least one endpoint must be configured under openai.routing.endpoints");
+        }
+        List<LlmEndpoint> configured = new ArrayList<>();
+        for (LlmRoutingProperties.Endpoint endpoint : properties.getEndpoints()) {
+            configured.add(new LlmEndpoint(endpoint, properties.getEwmaAlpha(), properties.getCooldownMs()));
+        }
+        this.endpoints = List.copyOf(configured);
+        this.acquireTimeoutMs = properties.getAcquireTimeoutMs();
+    }
+
+    /**
+     * Picks an endpoint and reserves one of its concurrency slots.
+     * The caller must {@link LlmEndpoint#release()} it when the call is done.
+     *
+     * @param exclude Endpoints already tried for this request
+     * @param maxWaitMs Upper bound on waiting for a slot, e.g. what is left of the request's deadline
+     * @return The reserved endpoint, or null if none could be reserved in time
+     */
+    public LlmEndpoint acquire(Set<LlmEndpoint> exclude, long maxWaitMs) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        List<LlmEndpoint> candidates = new ArrayList<>(endpoints.size());
+        for (LlmEndpoint endpoint : endpoints) {
+            if (!exclude.contains(endpoint) && endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Everything left is ejected; trying the least bad beats failing outright
+            for (LlmEndpoint endpoint : endpoints) {
+                if (!exclude.contains(endpoint)) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        // Power of two choices: compare two random candidates, prefer the lower score
+        int size = candidates.size();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        LlmEndpoint chosen = candidates.get(first);
+        if (size > 1) {
+            LlmEndpoint other = candidates.get((first + 1 + random.nextInt(size - 1)) % size);
+            if (other.score() < chosen.score()) {
+                LlmEndpoint swap = chosen;
+                chosen = other;
+                other = swap;
+            }
+            if (chosen.tryAcquire()) {
+                return chosen;
+            }
+            if (other.tryAcquire()) {
+                return other;
+            }
+        } else if (chosen.tryAcquire()) {
+            return chosen;
+        }
+
+        // Both picks are at their concurrency limit: take the best endpoint with a free slot
+        List<Scored> ranked = new ArrayList<>(size);
+        for (LlmEndpoint candidate : candidates) {
+            ranked.add(new Scored(candidate, candidate.score()));
+        }
+        ranked.sort(Comparator.comparingDouble(Scored::score));
+        for (Scored scored : ranked) {
+            if (scored.endpoint().tryAcquire()) {
+                return scored.endpoint();
+            }
+        }
+
+        // Everything is saturated: wait for a slot on the best one
+        LlmEndpoint best = ranked.get(0).endpoint();
+        return best.tryAcquire(Math.min(acquireTimeoutMs, maxWaitMs)) ? best : null;
+    }
+
+    /**
+     * Smoothed latency of the fastest endpoint in rotation, used to turn away requests that cannot finish in time
+     *
+     * @return The latency in ms, or 0 while no endpoint has been measured yet
+     */
+    public long expectedLatencyMs() {
+        long now = System.currentTimeMillis();
+        double best = 0;
+        for (LlmEndpoint endpoint : endpoints) {
+            double latency = endpoint.getEwmaLatencyMs();
+            if (endpoint.isAvailable(now) && latency > 0 && (best == 0 || latency < best)) {
+                best = latency;
+            }
+        }
+        return (long) best;
+    }
+
+    public List<LlmEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    // Scores are snapshotted so that sorting sees stable values
+    private record Scored(LlmEndpoint endpoint, double score) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.bng.service;
 
 import com.bng.util.AesEncryptionUtil;
+import com.bng.util.AskStageEvents;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -38,23 +39,35 @@ public class NonceService {
      * @return true if request is valid, false otherwise
      */
     public boolean validateRequest(String username, String encryptedNonce, long clientTimestamp) {
+        AskStageEvents.NonceValidation event = new AskStageEvents.NonceValidation();
+        event.begin();
+        String outcome = check(username, encryptedNonce, clientTimestamp);
+        event.outcome = outcome;
+        event.commit();
+        return outcome.equals("ok");
+    }
+    
+    /**
+     * @return "ok", or why the request is refused
+     */
+    private String check(String username, String encryptedNonce, long clientTimestamp) {
         long currentTime = Instant.now().toEpochMilli();
         
         // 1. Check if client timestamp is too old or in the future
         if (clientTimestamp < currentTime - MAX_REQUEST_AGE_MS || clientTimestamp > currentTime + 60000) {
-            return false;
+            return "stale";
         }
         
         // 2. Check if we're being rate-limited (requests too frequent)
         Long lastRequest = lastRequestTime.get(username);
         if (lastRequest != null && currentTime - lastRequest < MIN_REQUEST_INTERVAL_MS) {
-            return false;
+            return "rate_limited";
         }
         
         try {
             // 3. Check if nonce was already used (prevent replay)
             if (usedNonces.containsKey(encryptedNonce)) {
-                return false;
+                return "replayed";
             }
             
             // 4. Decrypt nonce - we trust the nonce created by the frontend
@@ -67,13 +80,29 @@ public class NonceService {
             // Cleanup expired nonces (could be moved to a scheduled task for better performance)
             cleanupExpiredNonces();
             
-            return true;
+            return "ok";
         } catch (Exception e) {
             // If there's any error in decryption, consider it invalid
-            return false;
+            return "undecryptable";
         }
     }
     
+    /**
+     * Charges a user for requests beyond the one already counted by {@link #validateRequest},
+     * e.g. for the remaining questions of a batch, by pushing their next allowed request further out
+     *
+     * @param username The username making the request
+     * @param extraRequests Number of additional requests to count
+     */
+    public void chargeRequests(String username, int extraRequests) {
+        if (extraRequests <= 0) {
+            return;
+        }
+        long charge = extraRequests * MIN_REQUEST_INTERVAL_MS;
+        long currentTime = Instant.now().toEpochMilli();
+        lastRequestTime.merge(username, currentTime + charge, (last, ignored) -> Math.max(last, currentTime) + charge);
+    }
+    
     private void cleanupExpiredNonces() {
         long currentTime = Instant.now().toEpochMilli();
         usedNonces.entrySet().removeIf(entry -> entry.getValue() < currentTime);
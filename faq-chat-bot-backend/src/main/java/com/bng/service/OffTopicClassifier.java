@@ -0,0 +1,175 @@
+package com.bng.service;
+
+import com.bng.model.AnswerSource;
+import com.bng.model.ChatLog;
+import com.bng.model.Faq;
+import com.bng.service.OffTopicModel.Example;
+import com.bng.util.FaqLoader;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Answers confidently off-topic questions locally with the same canned reply the system prompt asks
+ * the model for, saving the upstream round trip.
+ * <p>
+ * The model is trained at startup from {@code classifier/training.tsv}, the FAQ questions (in scope)
+ * and the chat logs of the last {@code classifier.off-topic.history-days} days, where a question counts as
+ * off-topic if the model answered it with the canned reply. A question is only short-circuited when it names
+ * none of the terms in {@code classifier/lexicon.txt} and its off-topic probability reaches
+ * {@code classifier.off-topic.threshold}.
+ */
+@Component
+public class OffTopicClassifier {
+    private static final Logger logger = LoggerFactory.getLogger(OffTopicClassifier.class);
+
+    public static final String OFF_TOPIC_REPLY = "Please ask something related to the Bhagavad Gita.";
+
+    private static final String LOG_DIR = "logs";
+    private static final String LOG_FILE_PREFIX = "chat_logs_";
+
+    private final FaqLoader faqLoader;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final double threshold;
+    private final int historyDays;
+    private final Counter shortCircuited;
+
+    private volatile OffTopicModel model;
+
+    public OffTopicClassifier(FaqLoader faqLoader, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${classifier.off-topic.enabled:true}") boolean enabled,
+                              @Value("${classifier.off-topic.threshold:0.95}") double threshold,
+                              @Value("${classifier.off-topic.history-days:30}") int historyDays) {
+        this.faqLoader = faqLoader;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.historyDays = historyDays;
+        this.shortCircuited = Counter.builder("ask.offtopic.short_circuited").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void train() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        List<Example> examples = new ArrayList<>(readExamples(new ClassPathResource("classifier/training.tsv").getInputStream()));
+        for (Faq faq : faqLoader.getFaqs()) {
+            examples.add(new Example(faq.getQuestion(), false));
+        }
+        int fromLogs = addLoggedExamples(examples);
+        model = OffTopicModel.train(examples, readLexicon(new ClassPathResource("classifier/lexicon.txt").getInputStream()));
+        logger.info("Off-topic classifier trained on {} questions, {} of them from chat logs", examples.size(), fromLogs);
+    }
+
+    /**
+     * @return Whether the question should get {@link #OFF_TOPIC_REPLY} without asking the upstream
+     */
+    public boolean isOffTopic(String question) {
+        OffTopicModel current = model;
+        if (current == null || current.offTopicProbability(question) < threshold) {
+            return false;
+        }
+        shortCircuited.increment();
+        return true;
+    }
+
+    /**
+     * Reads "label&lt;TAB&gt;question" lines, label being "on" or "off"; blank lines and # comments are skipped
+     */
+    public static List<Example> readExamples(InputStream in) throws IOException {
+        List<Example> examples = new ArrayList<>();
+        for (String line : readLines(in)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IOException("Missing label in training line: " + line);
+            }
+            examples.add(new Example(line.substring(tab + 1).trim(), line.substring(0, tab).trim().equals("off")));
+        }
+        return examples;
+    }
+
+    public static List<String> readLexicon(InputStream in) throws IOException {
+        return readLines(in);
+    }
+
+    private static List<String> readLines(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Labels logged questions by the model's own answer. Our canned replies are skipped, so the classifier
+     * never learns from its own decisions.
+     */
+    private int addLoggedExamples(List<Example> examples) {
+        Path logDir = Paths.get(LOG_DIR);
+        if (!Files.isDirectory(logDir)) {
+            return 0;
+        }
+        List<Path> logFiles;
+        try (Stream<Path> files = Files.list(logDir)) {
+            // File names end in yyyy-MM-dd, so reverse name order is newest first
+            logFiles = files
+                    .filter(p -> p.getFileName().toString().startsWith(LOG_FILE_PREFIX) && p.getFileName().toString().endsWith(".json"))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .limit(historyDays)
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("Could not list chat logs in {}", logDir, e);
+            return 0;
+        }
+
+        int added = 0;
+        for (Path logFile : logFiles) {
+            try (MappingIterator<ChatLog> logs = objectMapper.readerFor(ChatLog.class).readValues(logFile.toFile())) {
+                while (logs.hasNextValue()) {
+                    ChatLog log = logs.nextValue();
+                    if (log.getQuestion() == null || log.getAnswer() == null || log.getSource() == AnswerSource.CLASSIFIER
+                            || OpenAiClient.FALLBACK_ANSWER.equals(log.getAnswer())) {
+                        continue;
+                    }
+                    examples.add(new Example(log.getQuestion(), isCannedReply(log.getAnswer())));
+                    added++;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable chat log {}", logFile, e);
+            }
+        }
+        return added;
+    }
+
+    // The model sometimes quotes the reply or drops the final period
+    private static boolean isCannedReply(String answer) {
+        String stripped = answer.replaceAll("[\"'.\\s]+$", "").replaceAll("^[\"'\\s]+", "");
+        return stripped.equalsIgnoreCase(OFF_TOPIC_REPLY.substring(0, OFF_TOPIC_REPLY.length() - 1));
+    }
+}
@@ -0,0 +1,156 @@
+package com.bng.service;
+
+import com.bng.util.AhoCorasickMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Multinomial naive Bayes over lower-cased words, deciding whether a question is off-topic,
+ * behind a lexicon of domain terms that vetoes it: a question naming any of them is never off-topic.
+ * Immutable once trained and safe to share between threads.
+ */
+public class OffTopicModel {
+
+    private final AhoCorasickMatcher lexicon;
+    private final double logPriorOff;
+    private final double logPriorOn;
+    // log P(word | class) with add-one smoothing, for words seen in training
+    private final Map<String, double[]> logLikelihoods;
+    // log P(a word never seen in training | class), {off, on}
+    private final double[] logUnseen;
+
+    private OffTopicModel(AhoCorasickMatcher lexicon, double logPriorOff, double logPriorOn,
+                          Map<String, double[]> logLikelihoods, double[] logUnseen) {
+        this.lexicon = lexicon;
+        this.logPriorOff = logPriorOff;
+        this.logPriorOn = logPriorOn;
+        this.logLikelihoods = logLikelihoods;
+        this.logUnseen = logUnseen;
+    }
+
+    /**
+     * A labeled training question
+     */
+    public record Example(String question, boolean offTopic) {
+    }
+
+    public static OffTopicModel train(Collection<Example> examples, Collection<String> lexiconTerms) {
+        Map<String, long[]> counts = new HashMap<>();
+        long[] totals = new long[2];
+        long[] documents = new long[2];
+        for (Example example : examples) {
+            int label = example.offTopic() ? 0 : 1;
+            documents[label]++;
+            for (String word : words(example.question())) {
+                counts.computeIfAbsent(word, w -> new long[2])[label]++;
+                totals[label]++;
+            }
+        }
+
+        int vocabulary = counts.size();
+        // Good-Turing: a class that used many words only once is likely to use new words too.
+        // Off-topic questions range over everything, in-scope ones over a narrow vocabulary.
+        long[] singletons = new long[2];
+        for (long[] count : counts.values()) {
+            for (int label = 0; label < 2; label++) {
+                if (count[label] == 1) {
+                    singletons[label]++;
+                }
+            }
+        }
+        double[] logUnseen = new double[2];
+        for (int label = 0; label < 2; label++) {
+            logUnseen[label] = Math.log((singletons[label] + 1.0) / (totals[label] + vocabulary));
+        }
+
+        Map<String, double[]> logLikelihoods = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            long[] count = entry.getValue();
+            logLikelihoods.put(entry.getKey(), new double[] {
+                    Math.log((count[0] + 1.0) / (totals[0] + vocabulary)),
+                    Math.log((count[1] + 1.0) / (totals[1] + vocabulary))
+            });
+        }
+        long allDocuments = Math.max(1, documents[0] + documents[1]);
+        return new OffTopicModel(new AhoCorasickMatcher(lexiconTerms),
+                Math.log((documents[0] + 1.0) / (allDocuments + 2)),
+                Math.log((documents[1] + 1.0) / (allDocuments + 2)),
+                logLikelihoods, logUnseen);
+    }
+
+    /**
+     * @return Probability that the question is off-topic; 0 if it names a domain term
+     */
+    public double offTopicProbability(String question) {
+        if (lexicon.matches(question)) {
+            return 0;
+        }
+        double off = logPriorOff;
+        double on = logPriorOn;
+        for (String word : words(question)) {
+            double[] likelihood = logLikelihoods.getOrDefault(word, logUnseen);
+            off += likelihood[0];
+            on += likelihood[1];
+        }
+        return 1 / (1 + Math.exp(on - off));
+    }
+
+    /**
+     * Distinct lower-cased words of the text; repeating a word does not make a question more off-topic
+     */
+    static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Precision and recall of the off-topic label at the given threshold
+     */
+    public Evaluation evaluate(List<Example> examples, double threshold) {
+        int truePositives = 0;
+        int falsePositives = 0;
+        int falseNegatives = 0;
+        List<Example> mistakes = new ArrayList<>();
+        for (Example example : examples) {
+            boolean predicted = offTopicProbability(example.question()) >= threshold;
+            if (predicted && example.offTopic()) {
+                truePositives++;
+            } else if (predicted) {
+                falsePositives++;
+                mistakes.add(example);
+            } else if (example.offTopic()) {
+                falseNegatives++;
+                mistakes.add(example);
+            }
+        }
+        return new Evaluation(threshold, truePositives, falsePositives, falseNegatives, mistakes);
+    }
+
+    public record Evaluation(double threshold, int truePositives, int falsePositives, int falseNegatives, List<Example> mistakes) {
+
+        public double precision() {
+            return truePositives + falsePositives == 0 ? 1 : (double) truePositives / (truePositives + falsePositives);
+        }
+
+        public double recall() {
+            return truePositives + falseNegatives == 0 ? 1 : (double) truePositives / (truePositives + falseNegatives);
+        }
+    }
+}
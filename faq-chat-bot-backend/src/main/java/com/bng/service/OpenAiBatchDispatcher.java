@@ -0,0 +1,242 @@
+package com.bng.service;
+
+import com.bng.exception.DeadlineExceededException;
+import com.bng.service.OpenAiClient.UserQuestion;
+import com.bng.util.DeadlineMetrics;
+import com.bng.util.RequestDeadline;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Micro-batches cache-missed questions in front of {@link OpenAiClient}.
+ * Questions sharing a system prompt, which is the same for every user, are collected for up to {@code max-wait-ms} or {@code max-items}
+ * and sent as one structured request; the answers are handed back to the waiting callers.
+ * When batching is disabled every question goes straight to {@link OpenAiClient#getAIAnswer}.
+ */
+@Component
+public class OpenAiBatchDispatcher {
+
+    private final Logger logger = LoggerFactory.getLogger(OpenAiBatchDispatcher.class);
+
+    private final OpenAiClient openAiClient;
+    private final DeadlineMetrics deadlineMetrics;
+    private final boolean enabled;
+    private final int maxItems;
+    private final long maxWaitMs;
+    private final long latencyCapMs;
+
+    // Open batches keyed by system prompt, guarded by "this"
+    private final Map<String, List<PendingQuestion>> openBatches = new HashMap<>();
+
+    private final ScheduledExecutorService flushScheduler;
+    private final ExecutorService dispatchExecutor;
+
+    public OpenAiBatchDispatcher(OpenAiClient openAiClient, DeadlineMetrics deadlineMetrics,
+                                 @Value("${openai.batch.enabled:false}") boolean enabled,
+                                 @Value("${openai.batch.max-items:8}") int maxItems,
+                                 @Value("${openai.batch.max-wait-ms:50}") long maxWaitMs,
+                                 @Value("${openai.batch.latency-cap-ms:2000}") long latencyCapMs,
+                                 @Value("${openai.batch.dispatch-threads:4}") int dispatchThreads) {
+        this.openAiClient = openAiClient;
+        this.deadlineMetrics = deadlineMetrics;
+        this.enabled = enabled;
+        this.maxItems = maxItems;
+        this.maxWaitMs = maxWaitMs;
+        this.latencyCapMs = latencyCapMs;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "openai-batch-flush"));
+        this.dispatchExecutor = Executors.newFixedThreadPool(dispatchThreads, r -> new Thread(r, "openai-batch-dispatch"));
+    }
+
+    /**
+     * @throws DeadlineExceededException If the deadline runs out before an answer arrives
+     */
+    public String getAIAnswer(String systemPrompt, UserQuestion userQuestion, RequestDeadline deadline) throws InterruptedException {
+        if (!enabled) {
+            return openAiClient.getAIAnswer(systemPrompt, userQuestion, deadline);
+        }
+
+        PendingQuestion pending = enqueue(systemPrompt, userQuestion, deadline);
+        long capMs = Math.min(latencyCapMs, deadline.remainingMs());
+        try {
+            return pending.answer.get(capMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            boolean stillQueued = pending.claim();
+            if (deadline.isExpired()) {
+                if (stillQueued) {
+                    deadlineMetrics.recordQueueExpiry();
+                }
+                throw new DeadlineExceededException("Request deadline exceeded while waiting for a batch");
+            }
+            // Still queued after the latency cap: take it back and ask on our own
+            if (stillQueued) {
+                logger.debug("Latency cap reached while queued, falling back to a single call");
+                return openAiClient.getAIAnswer(systemPrompt, userQuestion, deadline);
+            }
+            // Already part of an in-flight batch, which is bounded by the upstream timeout
+            return awaitDispatched(pending, deadline);
+        } catch (ExecutionException e) {
+            return answerFromFailure(e);
+        }
+    }
+
+    private String awaitDispatched(PendingQuestion pending, RequestDeadline deadline) throws InterruptedException {
+        try {
+            return pending.answer.get(deadline.remainingMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline exceeded while its batch was in flight");
+        } catch (ExecutionException e) {
+            return answerFromFailure(e);
+        }
+    }
+
+    private static String answerFromFailure(ExecutionException e) {
+        if (e.getCause() instanceof DeadlineExceededException deadlineExceeded) {
+            throw deadlineExceeded;
+        }
+        return OpenAiClient.FALLBACK_ANSWER;
+    }
+
+    private PendingQuestion enqueue(String systemPrompt, UserQuestion userQuestion, RequestDeadline deadline) {
+        PendingQuestion pending = new PendingQuestion(userQuestion, deadline);
+        List<PendingQuestion> full = null;
+
+        synchronized (this) {
+            List<PendingQuestion> batch = openBatches.get(systemPrompt);
+            if (batch == null) {
+                batch = new ArrayList<>(maxItems);
+                openBatches.put(systemPrompt, batch);
+                List<PendingQuestion> scheduled = batch;
+                flushScheduler.schedule(() -> flush(systemPrompt, scheduled), maxWaitMs, TimeUnit.MILLISECONDS);
+            }
+            batch.add(pending);
+            if (batch.size() >= maxItems) {
+                openBatches.remove(systemPrompt);
+                full = batch;
+            }
+        }
+
+        if (full != null) {
+            List<PendingQuestion> toSend = full;
+            dispatchExecutor.execute(() -> dispatch(systemPrompt, toSend));
+        }
+        return pending;
+    }
+
+    private void flush(String systemPrompt, List<PendingQuestion> batch) {
+        synchronized (this) {
+            // The batch may already have been sent because it filled up
+            if (openBatches.get(systemPrompt) != batch) {
+                return;
+            }
+            openBatches.remove(systemPrompt);
+        }
+        dispatchExecutor.execute(() -> dispatch(systemPrompt, batch));
+    }
+
+    private void dispatch(String systemPrompt, List<PendingQuestion> batch) {
+        // Skip questions whose callers already gave up waiting and asked on their own, or ran out of time
+        List<PendingQuestion> claimed = new ArrayList<>(batch.size());
+        for (PendingQuestion pending : batch) {
+            if (!pending.claim()) {
+                continue;
+            }
+            if (pending.deadline.isExpired()) {
+                deadlineMetrics.recordQueueExpiry();
+                pending.answer.completeExceptionally(new DeadlineExceededException("Request deadline exceeded while waiting for a batch"));
+            } else {
+                claimed.add(pending);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (claimed.size() == 1) {
+                completeSingly(systemPrompt, claimed.get(0));
+                return;
+            }
+
+            // The shared call may run as long as the most patient caller still waits,
+            // and is not tied to any one caller, so that a single cancellation cannot abort it
+            long batchBudgetMs = 0;
+            for (PendingQuestion pending : claimed) {
+                batchBudgetMs = Math.max(batchBudgetMs, pending.deadline.remainingMs());
+            }
+            RequestDeadline batchDeadline = batchBudgetMs == Long.MAX_VALUE ? RequestDeadline.none() : RequestDeadline.after(batchBudgetMs);
+
+            List<UserQuestion> questions = new ArrayList<>(claimed.size());
+            for (PendingQuestion pending : claimed) {
+                questions.add(pending.question);
+            }
+
+            List<String> answers = openAiClient.getAIAnswers(systemPrompt, questions, batchDeadline);
+            if (answers == null) {
+                logger.warn("Batch of {} questions could not be answered in one call, falling back to single calls", claimed.size());
+                for (PendingQuestion pending : claimed) {
+                    completeSingly(systemPrompt, pending);
+                }
+                return;
+            }
+
+            logger.debug("Answered {} questions with one upstream call", claimed.size());
+            for (int i = 0; i < claimed.size(); i++) {
+                claimed.get(i).answer.complete(answers.get(i));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error dispatching question batch", e);
+            for (PendingQuestion pending : claimed) {
+                pending.answer.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void completeSingly(String systemPrompt, PendingQuestion pending) {
+        try {
+            pending.answer.complete(openAiClient.getAIAnswer(systemPrompt, pending.question, pending.deadline));
+        } catch (DeadlineExceededException e) {
+            pending.answer.completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdownNow();
+        dispatchExecutor.shutdownNow();
+    }
+
+    private static final class PendingQuestion {
+        private final UserQuestion question;
+        private final RequestDeadline deadline;
+        private final CompletableFuture<String> answer = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private PendingQuestion(UserQuestion question, RequestDeadline deadline) {
+            this.question = question;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Either the dispatcher or the waiting caller owns the upstream call, never both
+         */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
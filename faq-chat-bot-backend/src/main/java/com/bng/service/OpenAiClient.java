@@ -1,60 +1,249 @@
 package com.bng.service;
 
+import com.bng.exception.DeadlineExceededException;
+import com.bng.util.AskStageEvents;
+import com.bng.util.DeadlineMetrics;
+import com.bng.util.RequestDeadline;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 public class OpenAiClient {
 
-    private final Logger logger = LoggerFactory.getLogger(OpenAiClient.class);
-
-    @Value("${openai.api.key}")
-    private String openaiApiKey;
+    public static final String FALLBACK_ANSWER = "Sorry, I couldn't process that request.";
 
-    @Value("${openai.api.url}")
-    private String apiUrl;
+    private static final String BATCH_INSTRUCTIONS =
+            "You will receive a JSON object with a \"questions\" array. Each entry has a \"question\" and may have a \"context\" describing who is asking.\n" +
+            "Answer every question independently, following the rules above and taking its context into account.\n" +
+            "Reply with only a JSON object of the form {\"answers\": [\"...\"]} containing exactly one answer per question, in the same order.";
 
-    @Value("${openai.model}")
-    private String model;
+    private final Logger logger = LoggerFactory.getLogger(OpenAiClient.class);
 
-    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final LlmRouter llmRouter;
+    private final MeterRegistry meterRegistry;
+    private final DeadlineMetrics deadlineMetrics;
+    private final TokenAccountingService tokenAccounting;
+    private final int maxTokens;
 
-    public OpenAiClient() {
-        this.restTemplate = new RestTemplate();
+    public OpenAiClient(ObjectMapper objectMapper, LlmRouter llmRouter, MeterRegistry meterRegistry, DeadlineMetrics deadlineMetrics,
+                        TokenAccountingService tokenAccounting,
+                        @Value("${openai.max-tokens:500}") int maxTokens) {
+        this.objectMapper = objectMapper;
+        this.llmRouter = llmRouter;
+        this.meterRegistry = meterRegistry;
+        this.deadlineMetrics = deadlineMetrics;
+        this.tokenAccounting = tokenAccounting;
+        this.maxTokens = maxTokens;
     }
 
-    public String getAIAnswer(String systemPrompt, String userQuestion) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(openaiApiKey);
+    /**
+     * Asks a single question.
+     * The system prompt must be identical across users so the upstream can reuse its cached prefix;
+     * anything user-specific goes into the question's context, which is sent after it.
+     * The tokens used are charged to the question's user.
+     *
+     * @throws DeadlineExceededException If the deadline runs out or is cancelled before an answer arrives
+     */
+    public String getAIAnswer(String systemPrompt, UserQuestion question, RequestDeadline deadline) {
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "system", "content", systemPrompt));
+        if (question.context() != null) {
+            messages.add(Map.of("role", "system", "content", question.context()));
+        }
+        messages.add(Map.of("role", "user", "content", question.text()));
 
         Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", model);
-        requestBody.put("messages", List.of(
-                Map.of("role", "system", "content", systemPrompt),
-                Map.of("role", "user", "content", userQuestion)
-        ));
+        requestBody.put("messages", messages);
         requestBody.put("temperature", 0.7);
-        requestBody.put("max_tokens", 500);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+        requestBody.put("max_tokens", maxTokens);
 
         try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl, request, Map.class);
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.getBody().get("choices");
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            return message.get("content").toString();
+            Completion completion = postChatCompletion(requestBody, question.text().length(), deadline);
+            tokenAccounting.record(question.username(), completion.usage());
+            return completion.content();
+        } catch (DeadlineExceededException ex) {
+            throw ex;
         } catch (Exception ex) {
             logger.error("Error during OpenAI API call", ex);
-            return "Sorry, I couldn't process that request.";
+            return FALLBACK_ANSWER;
         }
     }
+
+    /**
+     * Answers several questions sharing one system prompt with a single chat-completions call.
+     * The tokens used are split evenly between the questions' users.
+     *
+     * @param systemPrompt The system prompt shared by all questions
+     * @param questions The questions to answer, each with its own context
+     * @param deadline The latest deadline among the questions' requests
+     * @return The answers in question order, or null if the call failed or the reply could not be demultiplexed
+     * @throws DeadlineExceededException If the deadline runs out or is cancelled before an answer arrives
+     */
+    public List<String> getAIAnswers(String systemPrompt, List<UserQuestion> questions, RequestDeadline deadline) {
+        List<Map<String, String>> entries = new ArrayList<>(questions.size());
+        int questionChars = 0;
+        for (UserQuestion question : questions) {
+            questionChars += question.text().length();
+            Map<String, String> entry = new LinkedHashMap<>();
+            entry.put("question", question.text());
+            if (question.context() != null) {
+                entry.put("context", question.context());
+            }
+            entries.add(entry);
+        }
+
+        Map<String, Object> requestBody = new HashMap<>();
+        try {
+            requestBody.put("messages", List.of(
+                    Map.of("role", "system", "content", systemPrompt),
+                    Map.of("role", "system", "content", BATCH_INSTRUCTIONS),
+                    Map.of("role", "user", "content", objectMapper.writeValueAsString(Map.of("questions", entries)))
+            ));
+            requestBody.put("temperature", 0.7);
+            requestBody.put("max_tokens", maxTokens * questions.size());
+            requestBody.put("response_format", Map.of("type", "json_object"));
+
+            Completion completion = postChatCompletion(requestBody, questionChars, deadline);
+            List<String> usernames = new ArrayList<>(questions.size());
+            for (UserQuestion question : questions) {
+                usernames.add(question.username());
+            }
+            tokenAccounting.recordShared(usernames, completion.usage());
+
+            JsonNode answers = objectMapper.readTree(completion.content()).path("answers");
+            if (!answers.isArray() || answers.size() != questions.size()) {
+                logger.warn("Batched OpenAI reply had {} answers for {} questions", answers.size(), questions.size());
+                return null;
+            }
+
+            List<String> result = new ArrayList<>(answers.size());
+            for (JsonNode answer : answers) {
+                if (!answer.isTextual()) {
+                    return null;
+                }
+                result.add(answer.asText());
+            }
+            return result;
+        } catch (DeadlineExceededException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            logger.error("Error during batched OpenAI API call", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Posts a chat-completions request and returns the content of the first choice with the call's token usage.
+     * The endpoint is chosen by {@link LlmRouter}; if it fails in a way another endpoint might not
+     * (see {@link LlmEndpoint#isRetryable}), the next best endpoint is tried for as long as the deadline allows.
+     * Each attempt is recorded as an {@link AskStageEvents.UpstreamCall}.
+     */
+    private Completion postChatCompletion(Map<String, Object> requestBody, int questionLength, RequestDeadline deadline) {
+        Set<LlmEndpoint> tried = new HashSet<>();
+        RuntimeException lastError = null;
+        int promptSize = promptSize(requestBody);
+
+        while (true) {
+            deadline.check("before the upstream call");
+            LlmEndpoint endpoint;
+            try {
+                endpoint = llmRouter.acquire(tried, deadline.remainingMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an LLM endpoint", e);
+            }
+            if (endpoint == null) {
+                throw lastError != null ? lastError : new IllegalStateException("No LLM endpoint available");
+            }
+            tried.add(endpoint);
+
+            AskStageEvents.UpstreamCall event = new AskStageEvents.UpstreamCall();
+            event.endpoint = endpoint.getName();
+            event.questionLength = questionLength;
+            event.promptSize = promptSize;
+            event.outcome = "error";
+            event.begin();
+            try {
+                Map<String, Object> response = endpoint.post(requestBody, deadline);
+                TokenUsage usage = TokenUsage.from(response.get("usage"));
+                recordUsage(endpoint, usage);
+                List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
+                Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+                event.outcome = "ok";
+                return new Completion(message.get("content").toString(), usage);
+            } catch (RuntimeException ex) {
+                if (deadline.isExpired()) {
+                    event.outcome = "deadline";
+                    deadlineMetrics.recordUpstreamAbort();
+                    throw new DeadlineExceededException("Upstream call abandoned at the request deadline", ex);
+                }
+                if (!LlmEndpoint.isRetryable(ex)) {
+                    throw ex;
+                }
+                logger.warn("LLM endpoint [{}] failed: {}", endpoint.getName(), ex.toString());
+                lastError = ex;
+            } finally {
+                event.commit();
+                endpoint.release();
+            }
+        }
+    }
+
+    // Characters of all messages, a rough measure of the prompt tokens an attempt costs
+    private static int promptSize(Map<String, Object> requestBody) {
+        int size = 0;
+        for (Map<String, String> message : (List<Map<String, String>>) requestBody.get("messages")) {
+            size += message.get("content").length();
+        }
+        return size;
+    }
+
+    /**
+     * Counts prompt, completion and cached prompt tokens per endpoint, so the effect of
+     * provider-side prefix caching can be read as llm.tokens{type=cached} / llm.tokens{type=prompt}
+     */
+    private void recordUsage(LlmEndpoint endpoint, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        countTokens(endpoint, "prompt", usage.promptTokens());
+        countTokens(endpoint, "completion", usage.completionTokens());
+        countTokens(endpoint, "cached", usage.cachedTokens());
+        logger.debug("LLM endpoint [{}] usage: prompt={} cached={} completion={}",
+                endpoint.getName(), usage.promptTokens(), usage.cachedTokens(), usage.completionTokens());
+    }
+
+    private void countTokens(LlmEndpoint endpoint, String type, long tokens) {
+        Counter.builder("llm.tokens")
+                .tag("endpoint", endpoint.getName())
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(tokens);
+    }
+
+    /**
+     * A question plus optional per-user context, kept apart from the shared system prompt
+     *
+     * @param username The user the tokens are charged to, or null for work not done on a user's behalf
+     */
+    public record UserQuestion(String username, String context, String text) {
+    }
+
+    private record Completion(String content, TokenUsage usage) {
+    }
 }
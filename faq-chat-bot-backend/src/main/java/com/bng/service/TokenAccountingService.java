@@ -0,0 +1,197 @@
+package com.bng.service;
+
+import com.bng.exception.QuotaExceededException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Upstream tokens used per user and day.
+ * Counts are kept in {@link LongAdder}s so that concurrent requests never contend on a lock, written to
+ * {@code usage.snapshot.dir/tokens-<day>.json} every {@code usage.snapshot.interval-ms} and reloaded on
+ * startup. {@link #checkQuota(String)} refuses upstream calls once a user has used
+ * {@code usage.daily-token-quota} prompt plus completion tokens today; calls already in flight may
+ * overshoot it by one answer.
+ */
+@Service
+public class TokenAccountingService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenAccountingService.class);
+    private static final String SNAPSHOT_PREFIX = "tokens-";
+
+    private final ObjectMapper objectMapper;
+    private final Path snapshotDir;
+    private final long dailyQuota;
+    private final Counter quotaRejected;
+
+    private final AtomicReference<DayLedger> ledger = new AtomicReference<>();
+
+    public TokenAccountingService(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${usage.snapshot.dir:usage}") String snapshotDir,
+                                  @Value("${usage.daily-token-quota:0}") long dailyQuota) {
+        this.objectMapper = objectMapper;
+        this.snapshotDir = Paths.get(snapshotDir);
+        this.dailyQuota = dailyQuota;
+        this.quotaRejected = Counter.builder("usage.quota.rejected").register(meterRegistry);
+        this.ledger.set(load(LocalDate.now()));
+    }
+
+    /**
+     * Adds the tokens of one upstream call to the user's total for today. Calls without a user, such as
+     * the cache warm-up, are not attributed.
+     */
+    public void record(String username, TokenUsage usage) {
+        if (username == null || usage == null) {
+            return;
+        }
+        UserUsage user = today().users.computeIfAbsent(username, u -> new UserUsage());
+        user.prompt.add(usage.promptTokens());
+        user.completion.add(usage.completionTokens());
+        user.cached.add(usage.cachedTokens());
+    }
+
+    /**
+     * Splits the tokens of one call answering several users' questions evenly between them
+     */
+    public void recordShared(List<String> usernames, TokenUsage usage) {
+        if (usage == null || usernames.isEmpty()) {
+            return;
+        }
+        int n = usernames.size();
+        for (int i = 0; i < n; i++) {
+            record(usernames.get(i), new TokenUsage(share(usage.promptTokens(), n, i),
+                    share(usage.completionTokens(), n, i), share(usage.cachedTokens(), n, i)));
+        }
+    }
+
+    /**
+     * @return Prompt plus completion tokens the user has used today
+     */
+    public long usedToday(String username) {
+        UserUsage user = today().users.get(username);
+        return user == null ? 0 : user.prompt.sum() + user.completion.sum();
+    }
+
+    /**
+     * @throws QuotaExceededException If the user has no tokens left today
+     */
+    public void checkQuota(String username) {
+        if (dailyQuota > 0 && usedToday(username) >= dailyQuota) {
+            quotaRejected.increment();
+            long untilMidnight = Duration.between(LocalDateTime.now(), LocalDate.now().plusDays(1).atStartOfDay()).toSeconds();
+            throw new QuotaExceededException("Daily token quota used up, please try again tomorrow", Math.max(1, untilMidnight));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usage.snapshot.interval-ms:60000}")
+    public void snapshot() {
+        write(today());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        write(ledger.get());
+    }
+
+    private DayLedger today() {
+        LocalDate day = LocalDate.now();
+        DayLedger current = ledger.get();
+        if (current.day.equals(day)) {
+            return current;
+        }
+        DayLedger next = new DayLedger(day);
+        if (ledger.compareAndSet(current, next)) {
+            // Yesterday is final now; late additions from calls still in flight are lost
+            write(current);
+            return next;
+        }
+        return ledger.get();
+    }
+
+    // The scheduled snapshot, the day rollover and shutdown may write at once; they share the .tmp file,
+    // and totals taken inside the lock are never older than a file already moved into place
+    private synchronized void write(DayLedger dayLedger) {
+        Map<String, TokenUsage> totals = new TreeMap<>();
+        dayLedger.users.forEach((username, user) ->
+                totals.put(username, new TokenUsage(user.prompt.sum(), user.completion.sum(), user.cached.sum())));
+        if (totals.isEmpty()) {
+            return;
+        }
+        Path path = snapshotPath(dayLedger.day);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(snapshotDir);
+            objectMapper.writeValue(tmp.toFile(), totals);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to write token usage snapshot {}", path, e);
+        }
+    }
+
+    private DayLedger load(LocalDate day) {
+        DayLedger dayLedger = new DayLedger(day);
+        Path path = snapshotPath(day);
+        if (!Files.exists(path)) {
+            return dayLedger;
+        }
+        try {
+            Map<String, TokenUsage> totals = objectMapper.readValue(path.toFile(), new TypeReference<Map<String, TokenUsage>>() {});
+            totals.forEach((username, usage) -> {
+                UserUsage user = new UserUsage();
+                user.prompt.add(usage.promptTokens());
+                user.completion.add(usage.completionTokens());
+                user.cached.add(usage.cachedTokens());
+                dayLedger.users.put(username, user);
+            });
+            logger.info("Loaded token usage of {} users from {}", totals.size(), path);
+        } catch (IOException e) {
+            logger.error("Could not read token usage snapshot {}, starting the day from zero", path, e);
+        }
+        return dayLedger;
+    }
+
+    private Path snapshotPath(LocalDate day) {
+        return snapshotDir.resolve(SNAPSHOT_PREFIX + day + ".json");
+    }
+
+    // The first (total % n) shares get one token more, so the shares add up to the total
+    private static long share(long total, int n, int index) {
+        return total / n + (index < total % n ? 1 : 0);
+    }
+
+    private static final class DayLedger {
+        private final LocalDate day;
+        private final Map<String, UserUsage> users = new ConcurrentHashMap<>();
+
+        private DayLedger(LocalDate day) {
+            this.day = day;
+        }
+    }
+
+    private static final class UserUsage {
+        private final LongAdder prompt = new LongAdder();
+        private final LongAdder completion = new LongAdder();
+        private final LongAdder cached = new LongAdder();
+    }
+}
@@ -0,0 +1,29 @@
+package com.bng.service;
+
+import java.util.Map;
+
+/**
+ * Token counts from the {@code usage} block of a chat-completions response.
+ * {@code cachedTokens} is the part of the prompt the provider served from its prefix cache.
+ */
+public record TokenUsage(long promptTokens, long completionTokens, long cachedTokens) {
+
+    /**
+     * @param usage The {@code usage} value of a response deserialized into maps
+     * @return The parsed counts, or null if the response carried no usage block
+     */
+    public static TokenUsage from(Object usage) {
+        if (!(usage instanceof Map<?, ?> fields)) {
+            return null;
+        }
+        long cached = 0;
+        if (fields.get("prompt_tokens_details") instanceof Map<?, ?> details) {
+            cached = count(details.get("cached_tokens"));
+        }
+        return new TokenUsage(count(fields.get("prompt_tokens")), count(fields.get("completion_tokens")), cached);
+    }
+
+    private static long count(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
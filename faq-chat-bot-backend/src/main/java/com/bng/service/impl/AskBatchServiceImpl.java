@@ -0,0 +1,119 @@
+package com.bng.service.impl;
+
+import com.bng.exception.DeadlineExceededException;
+import com.bng.exception.LaneSaturatedException;
+import com.bng.exception.QuotaExceededException;
+import com.bng.model.AskBatchItem;
+import com.bng.model.AskRequest;
+import com.bng.model.AskResponse;
+import com.bng.service.AskBatchService;
+import com.bng.service.AskLanes;
+import com.bng.service.AskService;
+import com.bng.util.RequestDeadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@Service
+public class AskBatchServiceImpl implements AskBatchService {
+    private final Logger logger = LoggerFactory.getLogger(AskBatchServiceImpl.class);
+
+    private final AskService askService;
+    private final AskLanes askLanes;
+    private final int maxParallelism;
+
+    public AskBatchServiceImpl(AskService askService, AskLanes askLanes,
+                               @Value("${ask.batch.max-parallelism:4}") int maxParallelism) {
+        this.askService = askService;
+        this.askLanes = askLanes;
+        this.maxParallelism = maxParallelism;
+    }
+
+    @Override
+    public List<CompletableFuture<AskBatchItem>> answerAll(List<String> questions, String username, RequestDeadline deadline) {
+        List<CompletableFuture<AskBatchItem>> results = new ArrayList<>(questions.size());
+        // Repeated questions in one batch share a single lookup and upstream call
+        Map<String, CompletableFuture<String>> answersByQuestion = new HashMap<>();
+        Queue<Miss> misses = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < questions.size(); i++) {
+            int index = i;
+            String question = questions.get(i).trim();
+            CompletableFuture<String> answer = answersByQuestion.computeIfAbsent(question, q -> {
+                AskResponse cached = askLanes.serveFromCache(() -> askService.getCachedAnswer(toRequest(q), username));
+                if (cached != null) {
+                    return CompletableFuture.completedFuture(cached.getAnswer());
+                }
+                CompletableFuture<String> pending = new CompletableFuture<>();
+                misses.add(new Miss(q, pending));
+                return pending;
+            });
+            results.add(answer.handle((text, error) -> error == null
+                    ? AskBatchItem.answered(index, text)
+                    : AskBatchItem.failed(index, describe(error))));
+        }
+
+        if (!misses.isEmpty()) {
+            logger.debug("Batch for user [{}]: {} questions, {} sent upstream", username, questions.size(), misses.size());
+            for (int i = 0; i < Math.min(maxParallelism, misses.size()); i++) {
+                sendNext(misses, username, deadline);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sends the next queued miss to the upstream lane; each finished miss sends the one after it,
+     * so no more than max-parallelism questions of a batch are in flight at once
+     */
+    private void sendNext(Queue<Miss> misses, String username, RequestDeadline deadline) {
+        Miss miss = misses.poll();
+        if (miss == null) {
+            return;
+        }
+        try {
+            askLanes.submitUpstream(() -> {
+                try {
+                    deadline.check("before the question was sent");
+                    miss.answer().complete(askService.getUpstreamAnswer(toRequest(miss.question()), username, deadline).getAnswer());
+                } catch (Exception e) {
+                    miss.answer().completeExceptionally(e);
+                } finally {
+                    sendNext(misses, username, deadline);
+                }
+            });
+        } catch (LaneSaturatedException e) {
+            // Everything still queued would be refused the same way
+            miss.answer().completeExceptionally(e);
+            for (Miss rest = misses.poll(); rest != null; rest = misses.poll()) {
+                rest.answer().completeExceptionally(e);
+            }
+        }
+    }
+
+    private static String describe(Throwable error) {
+        if (error instanceof DeadlineExceededException || error instanceof LaneSaturatedException
+                || error instanceof QuotaExceededException) {
+            return error.getMessage();
+        }
+        return "Sorry, I couldn't process that question.";
+    }
+
+    private static AskRequest toRequest(String question) {
+        AskRequest request = new AskRequest();
+        request.setQuestion(question);
+        return request;
+    }
+
+    private record Miss(String question, CompletableFuture<String> answer) {
+    }
+}
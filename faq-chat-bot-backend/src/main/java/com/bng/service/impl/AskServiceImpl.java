@@ -1,13 +1,26 @@
 package com.bng.service.impl;
 
+import com.bng.exception.DeadlineExceededException;
+import com.bng.model.AnswerSource;
 import com.bng.model.AskRequest;
 import com.bng.model.AskResponse;
 import com.bng.model.Faq;
 import com.bng.service.AskService;
 import com.bng.service.ChatLogService;
+import com.bng.service.ConversationStore;
+import com.bng.service.LlmRouter;
+import com.bng.service.OffTopicClassifier;
+import com.bng.service.OpenAiBatchDispatcher;
 import com.bng.service.OpenAiClient;
+import com.bng.service.OpenAiClient.UserQuestion;
+import com.bng.service.TokenAccountingService;
+import com.bng.util.AskStageEvents;
+import com.bng.util.CacheMetrics;
 import com.bng.util.CacheUtil;
+import com.bng.util.CachedAnswer;
+import com.bng.util.DeadlineMetrics;
 import com.bng.util.FaqLoader;
+import com.bng.util.RequestDeadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -18,37 +31,104 @@ import java.util.List;
 public class AskServiceImpl implements AskService {
     private final Logger logger = LoggerFactory.getLogger(AskServiceImpl.class);
     private final FaqLoader faqLoader;
-    private final OpenAiClient openAiClient;
+    private final OpenAiBatchDispatcher openAiBatchDispatcher;
     private final CacheUtil cacheUtil;
     private final ChatLogService chatLogService;
-
-    public AskServiceImpl(FaqLoader faqLoader, OpenAiClient openAiClient, CacheUtil cacheUtil, ChatLogService chatLogService) {
+    private final CacheMetrics cacheMetrics;
+    private final LlmRouter llmRouter;
+    private final DeadlineMetrics deadlineMetrics;
+    private final TokenAccountingService tokenAccounting;
+    private final OffTopicClassifier offTopicClassifier;
+    private final ConversationStore conversationStore;
+
+    // Sent for every off-topic question, so its encoded body is kept like a cached answer's
+    private static final CachedAnswer OFF_TOPIC_ANSWER = new CachedAnswer(OffTopicClassifier.OFF_TOPIC_REPLY);
+
+    // Identical for every user and request, so the upstream can serve it from its prompt cache
+    private final String systemPrompt;
+
+    public AskServiceImpl(FaqLoader faqLoader, OpenAiBatchDispatcher openAiBatchDispatcher, CacheUtil cacheUtil,
+                          ChatLogService chatLogService, CacheMetrics cacheMetrics,
+                          LlmRouter llmRouter, DeadlineMetrics deadlineMetrics, TokenAccountingService tokenAccounting,
+                          OffTopicClassifier offTopicClassifier, ConversationStore conversationStore) {
         this.faqLoader = faqLoader;
-        this.openAiClient = openAiClient;
+        this.openAiBatchDispatcher = openAiBatchDispatcher;
         this.cacheUtil = cacheUtil;
         this.chatLogService = chatLogService;
+        this.cacheMetrics = cacheMetrics;
+        this.llmRouter = llmRouter;
+        this.deadlineMetrics = deadlineMetrics;
+        this.tokenAccounting = tokenAccounting;
+        this.offTopicClassifier = offTopicClassifier;
+        this.conversationStore = conversationStore;
+        this.systemPrompt = buildSystemPrompt(faqLoader.getFaqs());
+    }
+
+    @Override
+    public AskResponse getAnswer(AskRequest request, String username, RequestDeadline deadline) throws Exception {
+        AskResponse cached = getCachedAnswer(request, username);
+        return cached != null ? cached : getUpstreamAnswer(request, username, deadline);
     }
 
     @Override
-    public AskResponse getAnswer(AskRequest request, String username) throws Exception {
+    public AskResponse getCachedAnswer(AskRequest request, String username) {
         String userQuestion = request.getQuestion().trim();
 
-        // Use a composite key: username::question
-        String cacheKey = username + "::" + userQuestion;
+        // A follow-up means something else depending on what was asked before, so neither may answer it
+        if (request.isFollowUp() && conversationStore.hasHistory(username)) {
+            return null;
+        }
+
+        if (offTopicClassifier.isOffTopic(userQuestion)) {
+            chatLogService.logChat(username, userQuestion, OffTopicClassifier.OFF_TOPIC_REPLY, AnswerSource.CLASSIFIER);
+            return AskResponse.fromCache(OFF_TOPIC_ANSWER);
+        }
 
-        // Check cache first
-        String cachedAnswer = cacheUtil.get(cacheKey);
+        CachedAnswer cachedAnswer = lookup(username, userQuestion);
+        cacheMetrics.recordLookup(cachedAnswer != null);
         if (cachedAnswer != null) {
-            logger.info("Cache hit for user [{}] and question: {} cachedAnswer:{}", username, userQuestion, cachedAnswer);
+            logger.atInfo().setMessage("Answered from cache")
+                    .addKeyValue("user", username)
+                    .addKeyValue("questionChars", userQuestion.length())
+                    .addKeyValue("answerChars", cachedAnswer.getAnswer().length())
+                    .log();
             // Log the cached Q&A
-            chatLogService.logChat(username, userQuestion, cachedAnswer);
-            return new AskResponse(cachedAnswer);
+            chatLogService.logChat(username, userQuestion, cachedAnswer.getAnswer(), AnswerSource.CACHE);
+            return AskResponse.fromCache(cachedAnswer);
         }
+        return null;
+    }
 
-        List<Faq> faqs = faqLoader.getFaqs();
-        String systemPrompt = buildSystemPrompt(faqs, username);
+    @Override
+    public CachedAnswer findCachedAnswer(AskRequest request, String username) {
+        return lookup(username, request.getQuestion().trim());
+    }
 
-        String aiResponse = openAiClient.getAIAnswer(systemPrompt, userQuestion);
+    // The user's own cached answer first, then the user-independent one precomputed by the warm-up job
+    private CachedAnswer lookup(String username, String userQuestion) {
+        CachedAnswer cachedAnswer = cacheUtil.getEntry(userCacheKey(username, userQuestion));
+        return cachedAnswer != null ? cachedAnswer : cacheUtil.getEntry(CacheUtil.sharedKey(userQuestion));
+    }
+
+    @Override
+    public AskResponse getUpstreamAnswer(AskRequest request, String username, RequestDeadline deadline) throws Exception {
+        String userQuestion = request.getQuestion().trim();
+
+        // Turn the request away now rather than spend upstream quota on an answer nobody will wait for
+        if (deadline.remainingMs() < llmRouter.expectedLatencyMs()) {
+            deadlineMetrics.recordEarlyReject();
+            throw new DeadlineExceededException("Not enough time left to answer this question");
+        }
+        tokenAccounting.checkQuota(username);
+
+        AskStageEvents.PromptBuild promptBuild = new AskStageEvents.PromptBuild();
+        promptBuild.begin();
+        String conversation = request.isFollowUp() ? conversationStore.context(username) : null;
+        UserQuestion question = new UserQuestion(username, buildUserContext(username, conversation), userQuestion);
+        promptBuild.promptSize = systemPrompt.length() + question.context().length() + userQuestion.length();
+        promptBuild.outcome = "ok";
+        promptBuild.commit();
+        String aiResponse = openAiBatchDispatcher.getAIAnswer(systemPrompt, question, deadline);
 
         // Check if the response is empty or null
         if (aiResponse == null || aiResponse.isEmpty()) {
@@ -56,27 +136,54 @@ public class AskServiceImpl implements AskService {
             return new AskResponse("Sorry, I couldn't process that request.");
         }
 
-        // Log the Q&A
-        logger.info("User: {} | Question: {} | Answer: {}", username, userQuestion, aiResponse);
+        // The texts themselves go to the chat log only
+        logger.atInfo().setMessage("Answered from upstream")
+                .addKeyValue("user", username)
+                .addKeyValue("questionChars", userQuestion.length())
+                .addKeyValue("answerChars", aiResponse.length())
+                .log();
         
         // Save Q&A with timestamp
-        chatLogService.logChat(username, userQuestion, aiResponse);
+        chatLogService.logChat(username, userQuestion, aiResponse, AnswerSource.UPSTREAM);
 
-        // Save in cache
-        cacheUtil.put(cacheKey, aiResponse);
+        // Save in cache, unless the answer depends on the conversation or is the fallback text
+        if (conversation == null && !aiResponse.equals(OpenAiClient.FALLBACK_ANSWER)) {
+            cacheUtil.put(userCacheKey(username, userQuestion), aiResponse);
+        }
 
         return new AskResponse(aiResponse);
     }
 
-    private String buildSystemPrompt(List<Faq> faqs, String userName) {
+    @Override
+    public String precomputeAnswer(String question) throws Exception {
+        String aiResponse = openAiBatchDispatcher.getAIAnswer(systemPrompt, new UserQuestion(null, null, question), RequestDeadline.none());
+
+        // Never persist the fallback text as if it were an answer
+        if (aiResponse == null || aiResponse.isEmpty() || aiResponse.equals(OpenAiClient.FALLBACK_ANSWER)) {
+            return null;
+        }
+        cacheUtil.put(CacheUtil.sharedKey(question), aiResponse);
+        return aiResponse;
+    }
+
+    // Use a composite key: username::question
+    private static String userCacheKey(String username, String question) {
+        return username + "::" + question;
+    }
+
+    /**
+     * Persona rules and the FAQ list. Nothing request-specific may go in here:
+     * the upstream only reuses a cached prompt prefix when it is byte-identical.
+     */
+    private String buildSystemPrompt(List<Faq> faqs) {
         StringBuilder prompt = new StringBuilder();
-        prompt.append("You are Lord Krishna, the spiritual guide, speaking directly to the user, who is named ").append(userName).append(".\n");
+        prompt.append("You are Lord Krishna, the spiritual guide, speaking directly to the user.\n");
         prompt.append("The user may ask questions about life, emotions, struggles, or philosophical topics.\n");
         prompt.append("Questions about the Bhagavad Gita itself (what it is, its history, its chapters, etc.) are valid and should be answered thoroughly.\n");
         prompt.append("If the Bhagavad Gita offers relevant teachings or wisdom to help answer the question, answer it respectfully using those teachings.\n");
         prompt.append("When answering, always speak as Krishna, giving the user direct teachings or wisdom from the Bhagavad Gita. Always respond with the tone that Krishna would use in the Gita, offering guidance and insight.\n");
         prompt.append("For questions related to stress, emotions, or philosophical dilemmas, please provide answers based on the Gita's insights.\n");
-        prompt.append("If the question is completely unrelated to spiritual topics or the Bhagavad Gita, respond with: 'Please ask something related to the Bhagavad Gita.'\n");
+        prompt.append("If the question is completely unrelated to spiritual topics or the Bhagavad Gita, respond with: '" + OffTopicClassifier.OFF_TOPIC_REPLY + "'\n");
         prompt.append("If the user asks for a specific length response (like '1000 words') that exceeds the system limit, start your response with: 'While I cannot provide 1000 words due to system constraints, I will give you a complete answer within my available limit.' Then proceed with your response.\n");
         prompt.append("Keep your responses concise and under 500 tokens (approximately 350-400 words) unless the user specifically requests a longer answer. Focus on the most important teachings relevant to the question.\n\n");
 
@@ -87,4 +194,12 @@ public class AskServiceImpl implements AskService {
 
         return prompt.toString();
     }
+
+    /**
+     * Per-user details and, for a follow-up question, the bounded conversation so far, sent after the shared system prompt
+     */
+    private String buildUserContext(String userName, String conversation) {
+        String user = "The user you are speaking with is named " + userName + ".";
+        return conversation == null ? user : user + "\n\n" + conversation;
+    }
 }
@@ -1,114 +1,248 @@
 package com.bng.service.impl;
 
+import com.bng.model.AnswerSource;
 import com.bng.model.ChatLog;
 import com.bng.service.ChatLogService;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.bng.service.ChatLoggedEvent;
+import com.bng.util.AskStageEvents;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps one JSON array of chat logs per day.
+ * Request threads only queue their entry; a background writer appends whatever has queued up in one write
+ * per day file. If the writer falls so far behind that the bounded queue is full, the request thread
+ * writes its entry itself rather than drop it.
+ */
 @Service
 public class ChatLogServiceImpl implements ChatLogService {
     private static final Logger logger = LoggerFactory.getLogger(ChatLogServiceImpl.class);
-    private static final String LOG_DIR = "logs";
     private static final String LOG_FILE_PREFIX = "chat_logs_";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    
-    private final Gson gson;
-    
-    public ChatLogServiceImpl() {
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                .create();
-        
+    private static final int MAX_BATCH = 256;
+    private static final long POLL_MS = 200;
+
+    private final Path logDir;
+    private final ObjectWriter chatLogWriter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<ChatLog> pending;
+    private final ExecutorService writer;
+    private volatile boolean running = true;
+
+    public ChatLogServiceImpl(ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                              @Value("${chat-log.dir:logs}") String logDir,
+                              @Value("${chat-log.queue-capacity:10000}") int queueCapacity) {
+        this.logDir = Paths.get(logDir);
+        this.eventPublisher = eventPublisher;
+        // Spring's mapper writes LocalDateTime as ISO-8601 text and skips null fields
+        this.chatLogWriter = objectMapper.writerFor(ChatLog.class).withDefaultPrettyPrinter();
+
         // Ensure logs directory exists
         try {
-            Path logsDir = Paths.get(LOG_DIR);
-            if (!Files.exists(logsDir)) {
-                Files.createDirectories(logsDir);
-                logger.info("Created logs directory: {}", logsDir.toAbsolutePath());
+            if (!Files.exists(this.logDir)) {
+                Files.createDirectories(this.logDir);
+                logger.info("Created logs directory: {}", this.logDir.toAbsolutePath());
             }
         } catch (IOException e) {
             logger.error("Failed to create logs directory", e);
         }
+
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "chat-log-writer"));
+        this.writer.execute(this::writeQueued);
     }
-    
+
     @Override
-    public void logChat(String username, String question, String answer) {
+    public void logChat(String username, String question, String answer, AnswerSource source) {
         ChatLog chatLog = createChatLog(username, question, answer);
-        saveLogToFile(chatLog);
+        chatLog.setSource(source);
+        eventPublisher.publishEvent(new ChatLoggedEvent(username, question, answer, source, Instant.now()));
+
+        // The request's share of the chat log write: normally just the hand-off to the writer
+        AskStageEvents.ChatLogWrite event = new AskStageEvents.ChatLogWrite();
+        event.questionLength = question == null ? 0 : question.length();
+        event.begin();
+        if (pending.offer(chatLog)) {
+            event.outcome = "queued";
+        } else {
+            logger.debug("Chat log queue is full, writing on the request thread");
+            event.outcome = saveLogsToFile(List.of(chatLog)) ? "ok" : "error";
+        }
+        event.commit();
     }
-    
+
     @Override
     public ChatLog createChatLog(String username, String question, String answer) {
         return new ChatLog(username, question, answer);
     }
-    
-    private void saveLogToFile(ChatLog chatLog) {
-        String today = chatLog.getTimestamp().format(DATE_FORMATTER);
-        String filename = LOG_FILE_PREFIX + today + ".json";
-        File logFile = new File(LOG_DIR, filename);
-        
+
+    /**
+     * Stops the writer once it has written everything queued so far
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.shutdown();
         try {
-            // Read existing logs or create new array
-            String jsonContent;
-            if (logFile.exists() && logFile.length() > 0) {
-                jsonContent = Files.readString(logFile.toPath());
-                
-                // Handle malformed JSON case - if it ends with ],
-                if (jsonContent.endsWith("],")) {
-                    jsonContent = jsonContent.substring(0, jsonContent.length() - 1);
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Chat log writer did not finish, {} entries not written", pending.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeQueued() {
+        List<ChatLog> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            // Not interrupted on shutdown: an interrupt would close the file channel in the middle of a write
+            while (running || !pending.isEmpty()) {
+                ChatLog first = pending.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
                 }
-                
-                // If the file doesn't start with [ or doesn't end with ], adjust it
-                if (!jsonContent.startsWith("[")) {
-                    jsonContent = "[" + jsonContent;
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH - 1);
+                saveLogsToFile(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends the entries to their day files; the writer and overflowing request threads take turns
+     *
+     * @return False if any of the files could not be written
+     */
+    private synchronized boolean saveLogsToFile(List<ChatLog> chatLogs) {
+        Map<String, List<ChatLog>> byFile = new LinkedHashMap<>();
+        for (ChatLog chatLog : chatLogs) {
+            String filename = LOG_FILE_PREFIX + chatLog.getTimestamp().format(DATE_FORMATTER) + ".json";
+            byFile.computeIfAbsent(filename, k -> new ArrayList<>()).add(chatLog);
+        }
+
+        boolean written = true;
+        for (Map.Entry<String, List<ChatLog>> entry : byFile.entrySet()) {
+            String filename = entry.getKey();
+            Path logFile = logDir.resolve(filename);
+            try {
+                List<String> entries = new ArrayList<>(entry.getValue().size());
+                for (ChatLog chatLog : entry.getValue()) {
+                    entries.add(chatLogWriter.writeValueAsString(chatLog));
                 }
-                if (!jsonContent.endsWith("]")) {
-                    // If it ends with comma, keep it, otherwise add one
-                    if (!jsonContent.endsWith(",")) {
-                        jsonContent += ",";
-                    }
-                } else {
-                    // If it ends with ], remove the ] to add more entries
-                    jsonContent = jsonContent.substring(0, jsonContent.length() - 1);
-                    if (!jsonContent.endsWith(",")) {
-                        jsonContent += ",";
-                    }
+                String joined = String.join(",", entries);
+
+                if (!appendToArray(logFile, joined)) {
+                    rewriteFile(logFile, joined);
                 }
-                
-                // Append the new entry and close the array
-                jsonContent += gson.toJson(chatLog) + "]";
-            } else {
-                // New file, create a fresh JSON array with one entry
-                jsonContent = "[" + gson.toJson(chatLog) + "]";
+                logger.atDebug().setMessage("Chat logged")
+                        .addKeyValue("entries", entries.size())
+                        .addKeyValue("file", filename)
+                        .log();
+            } catch (IOException e) {
+                logger.error("Failed to log chat to file", e);
+                written = false;
             }
-            
-            // Write the complete updated JSON back to file
-            Files.writeString(logFile.toPath(), jsonContent);
-            logger.info("Logged chat for user [{}] to file: {}", chatLog.getUsername(), logFile.getAbsolutePath());
-            
-        } catch (IOException e) {
-            logger.error("Failed to log chat to file", e);
         }
+        return written;
     }
-    
-    // Adapter for serializing LocalDateTime
-    private static class LocalDateTimeAdapter implements com.google.gson.JsonSerializer<LocalDateTime> {
-        @Override
-        public com.google.gson.JsonElement serialize(LocalDateTime src, java.lang.reflect.Type typeOfSrc, com.google.gson.JsonSerializationContext context) {
-            return new com.google.gson.JsonPrimitive(src.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+
+    /**
+     * Writes the entries over the closing bracket of a well-formed array, without reading the file
+     *
+     * @return False if the file is missing, empty or not a closed array
+     */
+    private static boolean appendToArray(Path logFile, String joined) throws IOException {
+        if (!Files.exists(logFile)) {
+            return false;
         }
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size < 2) {
+                return false;
+            }
+            ByteBuffer first = ByteBuffer.allocate(1);
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(first, 0);
+            channel.read(last, size - 1);
+            if (first.get(0) != '[' || last.get(0) != ']') {
+                return false;
+            }
+
+            String separator = size == 2 ? "" : ",";
+            ByteBuffer tail = ByteBuffer.wrap((separator + joined + "]").getBytes(StandardCharsets.UTF_8));
+            long position = size - 1;
+            while (tail.hasRemaining()) {
+                position += channel.write(tail, position);
+            }
+            return true;
+        }
+    }
+
+    private static void rewriteFile(Path logFile, String joined) throws IOException {
+        // Read existing logs or create new array
+        String jsonContent;
+        if (Files.exists(logFile) && Files.size(logFile) > 0) {
+            jsonContent = Files.readString(logFile);
+
+            // Handle malformed JSON case - if it ends with ],
+            if (jsonContent.endsWith("],")) {
+                jsonContent = jsonContent.substring(0, jsonContent.length() - 1);
+            }
+
+            // If the file doesn't start with [ or doesn't end with ], adjust it
+            if (!jsonContent.startsWith("[")) {
+                jsonContent = "[" + jsonContent;
+            }
+            if (!jsonContent.endsWith("]")) {
+                // If it ends with comma, keep it, otherwise add one
+                if (!jsonContent.endsWith(",")) {
+                    jsonContent += ",";
+                }
+            } else {
+                // If it ends with ], remove the ] to add more entries
+                jsonContent = jsonContent.substring(0, jsonContent.length() - 1);
+                if (!jsonContent.endsWith(",")) {
+                    jsonContent += ",";
+                }
+            }
+
+            // Append the new entries and close the array
+            jsonContent += joined + "]";
+        } else {
+            // New file, create a fresh JSON array
+            jsonContent = "[" + joined + "]";
+        }
+
+        // Write the complete updated JSON back to file
+        Files.writeString(logFile, jsonContent);
     }
-} 
\ No newline at end of file
+}
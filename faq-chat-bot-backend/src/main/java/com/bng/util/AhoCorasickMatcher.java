@@ -0,0 +1,91 @@
+package com.bng.util;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Finds any of a fixed set of phrases in a text in one pass, whatever the number of phrases (Aho-Corasick).
+ * Matching is case-insensitive and only counts whole words, so "gita" does not match inside "digital".
+ * Immutable once built and safe to share between threads.
+ */
+public class AhoCorasickMatcher {
+
+    private final Node root = new Node();
+
+    public AhoCorasickMatcher(Collection<String> phrases) {
+        for (String phrase : phrases) {
+            String normalized = phrase.trim().toLowerCase(Locale.ROOT);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < normalized.length(); i++) {
+                node = node.children.computeIfAbsent(normalized.charAt(i), c -> new Node());
+            }
+            node.matchLength = normalized.length();
+        }
+        buildFailureLinks();
+    }
+
+    /**
+     * @return Whether the text contains one of the phrases as whole words
+     */
+    public boolean matches(String text) {
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.failure;
+            }
+            node = node.children.getOrDefault(c, root);
+            // Walk the chain of phrases ending here, longest first
+            for (Node candidate = node; candidate != null; candidate = candidate.output) {
+                if (candidate.matchLength > 0
+                        && isWordBoundary(text, i + 1 - candidate.matchLength) && isWordBoundary(text, i + 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void buildFailureLinks() {
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.children.values()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                Node child = entry.getValue();
+                Node fallback = node.failure;
+                while (fallback != root && !fallback.children.containsKey(entry.getKey())) {
+                    fallback = fallback.failure;
+                }
+                Node failure = fallback.children.get(entry.getKey());
+                child.failure = failure != null && failure != child ? failure : root;
+                // Nearest suffix that is itself a phrase
+                child.output = child.failure.matchLength > 0 ? child.failure : child.failure.output;
+                queue.add(child);
+            }
+        }
+    }
+
+    // Whether a word may start or end between index - 1 and index
+    private static boolean isWordBoundary(String text, int index) {
+        return index <= 0 || index >= text.length()
+                || !Character.isLetterOrDigit(text.charAt(index)) || !Character.isLetterOrDigit(text.charAt(index - 1));
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private Node failure;
+        private Node output;
+        private int matchLength;
+    }
+}
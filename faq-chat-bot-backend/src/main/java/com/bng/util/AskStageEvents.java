@@ -0,0 +1,78 @@
+package com.bng.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the stages of an /api/ask request.
+ * Each event's duration is the time spent in its stage; fields that do not apply to a stage stay empty.
+ * They cost next to nothing unless a recording enables them, e.g. with {@code jfr/ask-pipeline.jfc},
+ * and a recording is summarized per stage by {@code JfrStageReport}.
+ */
+public final class AskStageEvents {
+
+    private AskStageEvents() {
+    }
+
+    @Category({"FAQ Chat Bot", "Ask Pipeline"})
+    @StackTrace(false)
+    public abstract static class StageEvent extends Event {
+        @Label("Outcome")
+        public String outcome;
+
+        @Label("Cache Tier")
+        @Description("heap, disk or miss")
+        public String cacheTier;
+
+        @Label("Question Length")
+        @Description("Characters in the question")
+        public int questionLength;
+
+        @Label("Prompt Size")
+        @Description("Characters sent to the model")
+        public int promptSize;
+    }
+
+    @Name("com.bng.ask.TokenParse")
+    @Label("JWT Parse")
+    public static class TokenParse extends StageEvent {
+    }
+
+    @Name("com.bng.ask.NonceValidation")
+    @Label("Nonce Validation")
+    public static class NonceValidation extends StageEvent {
+    }
+
+    @Name("com.bng.ask.LanguageValidation")
+    @Label("Language Validation")
+    public static class LanguageValidation extends StageEvent {
+    }
+
+    @Name("com.bng.ask.CacheLookup")
+    @Label("Cache Lookup")
+    public static class CacheLookup extends StageEvent {
+    }
+
+    @Name("com.bng.ask.PromptBuild")
+    @Label("Prompt Build")
+    @Description("Assembling the per-request user context sent after the shared system prompt")
+    public static class PromptBuild extends StageEvent {
+    }
+
+    @Name("com.bng.ask.UpstreamCall")
+    @Label("Upstream Call")
+    @Description("One attempt against one LLM endpoint")
+    public static class UpstreamCall extends StageEvent {
+        @Label("Endpoint")
+        public String endpoint;
+    }
+
+    @Name("com.bng.ask.ChatLogWrite")
+    @Label("Chat Log Write")
+    public static class ChatLogWrite extends StageEvent {
+    }
+}
@@ -0,0 +1,49 @@
+package com.bng.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answer cache hit/miss metrics, including the hit rate during the cold-start window after boot
+ */
+@Component
+public class CacheMetrics {
+
+    private final long startedAt = System.currentTimeMillis();
+    private final long coldStartWindowMs;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final LongAdder coldStartHits = new LongAdder();
+    private final LongAdder coldStartLookups = new LongAdder();
+
+    public CacheMetrics(MeterRegistry meterRegistry,
+                        @Value("${cache.warm-up.cold-start-window-ms:600000}") long coldStartWindowMs) {
+        this.coldStartWindowMs = coldStartWindowMs;
+        this.hits = Counter.builder("ask.cache.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("ask.cache.lookups").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("ask.cache.cold_start.hit_ratio", this, CacheMetrics::coldStartHitRatio)
+                .description("Answer cache hit ratio during the cold-start window after boot")
+                .register(meterRegistry);
+    }
+
+    public void recordLookup(boolean hit) {
+        (hit ? hits : misses).increment();
+        if (System.currentTimeMillis() - startedAt <= coldStartWindowMs) {
+            coldStartLookups.increment();
+            if (hit) {
+                coldStartHits.increment();
+            }
+        }
+    }
+
+    public double coldStartHitRatio() {
+        long lookups = coldStartLookups.sum();
+        return lookups == 0 ? 0.0 : (double) coldStartHits.sum() / lookups;
+    }
+}
@@ -1,25 +1,113 @@
 package com.bng.util;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
+/**
+ * Two-tier answer cache: a small LRU map on the heap in front of {@link DiskAnswerCache}.
+ * Heap entries keep their encoded response body next to the answer, see {@link CachedAnswer}.
+ */
 @Component
 public class CacheUtil {
 
-    private final Map<String, String> cache = new LinkedHashMap<>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
-            return size() > 50; // max 50 cached entries
-        }
-    };
+    // Prefix for answers that are not tied to a user, e.g. precomputed by the warm-up job
+    private static final String SHARED_PREFIX = "*::";
+
+    private final Map<String, CachedAnswer> cache;
+    private final DiskAnswerCache diskCache;
+
+    public CacheUtil(DiskAnswerCache diskCache, @Value("${cache.max-entries:500}") int maxEntries) {
+        this.diskCache = diskCache;
+        // Access order, so hits keep an answer from being evicted
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAnswer> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
 
     public String get(String key) {
-        return cache.get(key);
+        CachedAnswer entry = getEntry(key);
+        return entry != null ? entry.getAnswer() : null;
+    }
+
+    /**
+     * Like {@link #get(String)}, but returns the heap entry, whose encoded response body is reused across hits
+     */
+    public CachedAnswer getEntry(String key) {
+        AskStageEvents.CacheLookup event = new AskStageEvents.CacheLookup();
+        event.begin();
+        CachedAnswer entry;
+        synchronized (this) {
+            entry = cache.get(key);
+        }
+        if (entry != null) {
+            commit(event, "heap");
+            return entry;
+        }
+
+        // Heap miss: fall back to the disk tier and promote what it has
+        String value = diskCache.get(key);
+        if (value != null) {
+            synchronized (this) {
+                entry = cache.computeIfAbsent(key, k -> new CachedAnswer(value));
+            }
+        }
+        commit(event, entry != null ? "disk" : "miss");
+        return entry;
+    }
+
+    private static void commit(AskStageEvents.CacheLookup event, String tier) {
+        event.cacheTier = tier;
+        event.outcome = tier.equals("miss") ? "miss" : "hit";
+        event.commit();
     }
 
     public void put(String key, String value) {
-        cache.put(key, value);
+        synchronized (this) {
+            cache.put(key, new CachedAnswer(value));
+        }
+        diskCache.put(key, value);
+    }
+
+    /**
+     * Puts an answer in the heap tier only, for answers already persisted elsewhere, such as the warm-up snapshot
+     */
+    public synchronized void putHeap(String key, String value) {
+        cache.put(key, new CachedAnswer(value));
+    }
+
+    /**
+     * Key under which a user-independent answer to the question is stored.
+     * Case and whitespace are normalized so that trivial variants share one entry.
+     */
+    public static String sharedKey(String question) {
+        return SHARED_PREFIX + normalizeQuestion(question);
+    }
+
+    /**
+     * Trims, collapses whitespace and lower-cases the question
+     */
+    public static String normalizeQuestion(String question) {
+        return question.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns a copy of all user-independent answers, keyed by their shared key
+     */
+    public synchronized Map<String, String> sharedEntries() {
+        Map<String, String> shared = new HashMap<>();
+        for (Map.Entry<String, CachedAnswer> entry : cache.entrySet()) {
+            if (entry.getKey().startsWith(SHARED_PREFIX)) {
+                shared.put(entry.getKey(), entry.getValue().getAnswer());
+            }
+        }
+        return shared;
     }
 }
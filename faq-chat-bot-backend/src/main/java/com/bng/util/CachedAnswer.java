@@ -0,0 +1,98 @@
+package com.bng.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An answer held by the heap tier of {@link CacheUtil}, together with its encoded response body.
+ * The JSON body, its gzip-compressed form and their ETags are computed on the first hit and reused by every
+ * later one, so a hot answer is serialized and compressed once rather than per request.
+ */
+public final class CachedAnswer {
+
+    private final String answer;
+    private volatile Encoded encoded;
+
+    public CachedAnswer(String answer) {
+        this.answer = answer;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    /**
+     * @param bodyEncoder Turns the answer into the response body; only called on the first use
+     */
+    public Encoded encoded(Function<String, byte[]> bodyEncoder) {
+        Encoded current = encoded;
+        if (current == null) {
+            // Racing first hits may encode twice; either result is the same
+            current = Encoded.of(bodyEncoder.apply(answer));
+            encoded = current;
+        }
+        return current;
+    }
+
+    /**
+     * The response body in identity and gzip coding, each with its own strong ETag
+     *
+     * @param gzipped The compressed body, or null if compressing does not make it smaller
+     */
+    public record Encoded(byte[] body, String etag, byte[] gzipped, String gzipEtag) {
+
+        static Encoded of(byte[] body) {
+            String tag = tag(body);
+            byte[] gzipped = gzip(body);
+            if (gzipped.length >= body.length) {
+                gzipped = null;
+            }
+            return new Encoded(body, "\"" + tag + "\"", gzipped, "\"" + tag + "-gzip\"");
+        }
+
+        /**
+         * Whether an If-None-Match header names this body in either coding, compared weakly as RFC 9110 requires
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String tag(byte[] body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
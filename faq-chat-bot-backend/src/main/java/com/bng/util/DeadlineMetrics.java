@@ -0,0 +1,53 @@
+package com.bng.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts work given up because of request deadlines, tagged by the stage it was dropped at:
+ * admission (rejected before calling upstream), queue (expired while waiting for a batch),
+ * upstream (call aborted mid-flight), response (timed out before an answer was ready)
+ * and disconnect (client went away). One request can count at more than one stage.
+ */
+@Component
+public class DeadlineMetrics {
+
+    private final Counter admission;
+    private final Counter queue;
+    private final Counter upstream;
+    private final Counter response;
+    private final Counter disconnect;
+
+    public DeadlineMetrics(MeterRegistry meterRegistry) {
+        this.admission = abandoned(meterRegistry, "admission");
+        this.queue = abandoned(meterRegistry, "queue");
+        this.upstream = abandoned(meterRegistry, "upstream");
+        this.response = abandoned(meterRegistry, "response");
+        this.disconnect = abandoned(meterRegistry, "disconnect");
+    }
+
+    public void recordEarlyReject() {
+        admission.increment();
+    }
+
+    public void recordQueueExpiry() {
+        queue.increment();
+    }
+
+    public void recordUpstreamAbort() {
+        upstream.increment();
+    }
+
+    public void recordResponseTimeout() {
+        response.increment();
+    }
+
+    public void recordDisconnect() {
+        disconnect.increment();
+    }
+
+    private static Counter abandoned(MeterRegistry meterRegistry, String stage) {
+        return Counter.builder("ask.abandoned").tag("stage", stage).register(meterRegistry);
+    }
+}
@@ -0,0 +1,330 @@
+package com.bng.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Second-level answer cache that survives restarts.
+ * Answers are appended to a memory-mapped log file and located through an in-heap hash index of keys,
+ * so values stay off the Java heap. Each record carries a CRC32; on startup the log is replayed and
+ * truncated at the first record that fails its checksum. Expired and overwritten records are
+ * dropped by compaction, which rewrites the live records into a fresh file.
+ * <p>
+ * Record layout: crc32, key length, value length, expiry (epoch ms), key bytes, value bytes.
+ */
+@Component
+public class DiskAnswerCache {
+    private static final Logger logger = LoggerFactory.getLogger(DiskAnswerCache.class);
+
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+    private static final long GROWTH_BYTES = 16L << 20;
+    private static final long MIN_COMPACTION_BYTES = 1L << 20;
+
+    private final Path path;
+    private final boolean enabled;
+    private final long ttlMs;
+    private final double compactionThreshold;
+    private final long maxBytes;
+
+    // Swapped as a whole on growth and compaction, so readers always see a matching buffer and index
+    private volatile Segment segment;
+
+    // Bytes taken by overwritten records, guarded by "this"
+    private long deadBytes;
+
+    public DiskAnswerCache(MeterRegistry meterRegistry,
+                           @Value("${cache.disk.enabled:true}") boolean enabled,
+                           @Value("${cache.disk.path:cache/answers.log}") String path,
+                           @Value("${cache.disk.ttl-ms:604800000}") long ttlMs,
+                           @Value("${cache.disk.compaction-threshold:0.5}") double compactionThreshold,
+                           @Value("${cache.disk.max-bytes:268435456}") long maxBytes) {
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+        this.ttlMs = ttlMs;
+        this.compactionThreshold = compactionThreshold;
+        this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE);
+
+        Gauge.builder("ask.cache.disk.entries", this, cache -> cache.segment == null ? 0 : cache.segment.index.size())
+                .register(meterRegistry);
+        Gauge.builder("ask.cache.disk.bytes", this, cache -> cache.segment == null ? 0 : cache.segment.writePosition)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            segment = recover();
+            logger.info("Disk answer cache opened with {} entries ({} bytes) from {}",
+                    segment.index.size(), segment.writePosition, path);
+        } catch (IOException e) {
+            // The cache is an optimisation; run on the heap tier alone rather than fail startup
+            logger.error("Could not open disk answer cache at {}, continuing without it", path, e);
+        }
+    }
+
+    /**
+     * @return The cached answer, or null if absent, expired or the disk tier is unavailable
+     */
+    public String get(String key) {
+        Segment current = segment;
+        if (current == null) {
+            return null;
+        }
+        Location location = current.index.get(key);
+        if (location == null || location.expiresAt() < System.currentTimeMillis()) {
+            return null;
+        }
+        byte[] value = new byte[location.valueLength()];
+        current.buffer.get(location.valueOffset(), value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    public synchronized void put(String key, String value) {
+        if (segment == null || key.isEmpty()) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int recordLength = HEADER_BYTES + keyBytes.length + valueBytes.length;
+
+        try {
+            if (!ensureCapacity(recordLength)) {
+                logger.warn("Disk answer cache is full ({} bytes), not storing entry", maxBytes);
+                return;
+            }
+        } catch (IOException e) {
+            logger.error("Failed to grow disk answer cache", e);
+            return;
+        }
+
+        Segment current = segment;
+        int offset = current.writePosition;
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        MappedByteBuffer buffer = current.buffer;
+        buffer.putInt(offset + 4, keyBytes.length);
+        buffer.putInt(offset + 8, valueBytes.length);
+        buffer.putLong(offset + 12, expiresAt);
+        buffer.put(offset + HEADER_BYTES, keyBytes);
+        buffer.put(offset + HEADER_BYTES + keyBytes.length, valueBytes);
+        // The checksum goes in last, so a torn write never looks like a valid record
+        buffer.putInt(offset, checksum(buffer, offset, recordLength));
+
+        Location location = new Location(offset, offset + HEADER_BYTES + keyBytes.length, valueBytes.length, recordLength, expiresAt);
+        Location previous = current.index.put(key, location);
+        if (previous != null) {
+            deadBytes += previous.recordLength();
+        }
+        current.writePosition = offset + recordLength;
+    }
+
+    /**
+     * Rewrites the log without expired and overwritten records once they make up enough of it
+     */
+    @Scheduled(fixedDelayString = "${cache.disk.compaction-interval-ms:600000}")
+    public synchronized void compactIfNeeded() {
+        Segment current = segment;
+        if (current == null || current.writePosition < MIN_COMPACTION_BYTES) {
+            return;
+        }
+        long reclaimable = deadBytes;
+        long now = System.currentTimeMillis();
+        for (Location location : current.index.values()) {
+            if (location.expiresAt() < now) {
+                reclaimable += location.recordLength();
+            }
+        }
+        if (reclaimable >= compactionThreshold * current.writePosition) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.error("Disk answer cache compaction failed", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        Segment current = segment;
+        segment = null;
+        if (current != null) {
+            current.buffer.force();
+            closeQuietly(current.channel);
+        }
+    }
+
+    private boolean ensureCapacity(int recordLength) throws IOException {
+        Segment current = segment;
+        if ((long) current.writePosition + recordLength <= current.buffer.capacity()) {
+            return true;
+        }
+        if (deadBytes > 0) {
+            compact();
+            current = segment;
+            if ((long) current.writePosition + recordLength <= current.buffer.capacity()) {
+                return true;
+            }
+        }
+        long needed = (long) current.writePosition + recordLength;
+        if (needed > maxBytes) {
+            return false;
+        }
+        long capacity = Math.min(maxBytes, roundUp(needed));
+        MappedByteBuffer grown = current.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        // The old segment keeps its own index: readers still holding it must not find records beyond its mapping
+        segment = new Segment(current.channel, grown, new ConcurrentHashMap<>(current.index), current.writePosition);
+        return true;
+    }
+
+    private void compact() throws IOException {
+        Segment current = segment;
+        long now = System.currentTimeMillis();
+        long liveBytes = 0;
+        for (Location location : current.index.values()) {
+            if (location.expiresAt() >= now) {
+                liveBytes += location.recordLength();
+            }
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(maxBytes, roundUp(liveBytes + 1)));
+        Map<String, Location> index = new ConcurrentHashMap<>();
+
+        int position = 0;
+        for (Map.Entry<String, Location> entry : current.index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.expiresAt() < now) {
+                continue;
+            }
+            buffer.put(position, current.buffer, location.recordOffset(), location.recordLength());
+            int shift = position - location.recordOffset();
+            index.put(entry.getKey(), new Location(position, location.valueOffset() + shift,
+                    location.valueLength(), location.recordLength(), location.expiresAt()));
+            position += location.recordLength();
+        }
+        buffer.force();
+
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment = new Segment(channel, buffer, index, position);
+        deadBytes = 0;
+        // Readers still holding the old segment keep a valid mapping until they drop it
+        closeQuietly(current.channel);
+        logger.info("Compacted disk answer cache from {} to {} bytes", current.writePosition, position);
+    }
+
+    /**
+     * Replays the log into a fresh index, stopping at the first record that fails validation
+     */
+    private Segment recover() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(maxBytes, roundUp(Math.max(fileSize, 1))));
+        int capacity = buffer.capacity();
+
+        Map<String, Location> index = new ConcurrentHashMap<>();
+        long now = System.currentTimeMillis();
+        int position = 0;
+        while (position + HEADER_BYTES <= capacity) {
+            int keyLength = buffer.getInt(position + 4);
+            int valueLength = buffer.getInt(position + 8);
+            if (keyLength <= 0 || valueLength < 0 || (long) position + HEADER_BYTES + keyLength + valueLength > capacity) {
+                break;
+            }
+            int recordLength = HEADER_BYTES + keyLength + valueLength;
+            if (buffer.getInt(position) != checksum(buffer, position, recordLength)) {
+                logger.warn("Disk answer cache record at offset {} failed its checksum, truncating", position);
+                break;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(position + HEADER_BYTES, keyBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            long expiresAt = buffer.getLong(position + 12);
+
+            Location previous;
+            if (expiresAt < now) {
+                previous = index.remove(key);
+                deadBytes += recordLength;
+            } else {
+                previous = index.put(key, new Location(position, position + HEADER_BYTES + keyLength, valueLength, recordLength, expiresAt));
+            }
+            if (previous != null) {
+                deadBytes += previous.recordLength();
+            }
+            position += recordLength;
+        }
+
+        // Wipe whatever follows the last good record so it can never be replayed later
+        int tail = (int) Math.min(capacity, Math.max(fileSize, position));
+        byte[] zeros = new byte[8192];
+        for (int offset = position; offset < tail; offset += zeros.length) {
+            buffer.put(offset, zeros, 0, Math.min(zeros.length, tail - offset));
+        }
+
+        return new Segment(channel, buffer, index, position);
+    }
+
+    private static int checksum(ByteBuffer buffer, int recordOffset, int recordLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(recordOffset + 4, recordLength - 4));
+        return (int) crc.getValue();
+    }
+
+    private static long roundUp(long bytes) {
+        return ((bytes + GROWTH_BYTES - 1) / GROWTH_BYTES) * GROWTH_BYTES;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close disk answer cache file", e);
+        }
+    }
+
+    private record Location(int recordOffset, int valueOffset, int valueLength, int recordLength, long expiresAt) {
+    }
+
+    private static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final Map<String, Location> index;
+        // Guarded by the cache's lock; read unsynchronized only for metrics
+        private volatile int writePosition;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer, Map<String, Location> index, int writePosition) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.index = index;
+            this.writePosition = writePosition;
+        }
+    }
+}
@@ -12,12 +12,16 @@ import java.util.List;
 
 @Component
 public class FaqLoader {
+    private final ObjectMapper objectMapper;
     private List<Faq> faqs;
 
+    public FaqLoader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
     @PostConstruct
     public void init() throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        faqs = mapper.readValue(new ClassPathResource("faqs.json").getInputStream(), new TypeReference<List<Faq>>() {});
+        faqs = objectMapper.readValue(new ClassPathResource("faqs.json").getInputStream(), new TypeReference<List<Faq>>() {});
     }
 
     public List<Faq> getFaqs() {
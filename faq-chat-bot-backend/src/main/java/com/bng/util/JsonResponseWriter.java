@@ -0,0 +1,93 @@
+package com.bng.util;
+
+import com.bng.model.AskBatchItem;
+import com.bng.model.AskResponse;
+import com.bng.model.ErrorResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Central JSON serialization for responses written outside of Spring MVC's message converters
+ * (filters, entry points) and for pre-encoded error bodies.
+ * All writers are derived from the application-wide {@link ObjectMapper}.
+ */
+@Component
+public class JsonResponseWriter {
+
+    private final ObjectWriter askResponseWriter;
+    private final ObjectWriter errorResponseWriter;
+    private final ObjectWriter askBatchItemWriter;
+
+    // Encoded bodies for constant error messages, keyed by message
+    private final Map<String, byte[]> staticErrorBodies = new ConcurrentHashMap<>();
+
+    public JsonResponseWriter(ObjectMapper objectMapper) {
+        // writerFor() resolves the root serializer up front, so no lookup happens per request
+        this.askResponseWriter = objectMapper.writerFor(AskResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.errorResponseWriter = objectMapper.writerFor(ErrorResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.askBatchItemWriter = objectMapper.writerFor(AskBatchItem.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Returns the encoded body for a constant error message.
+     * Only call this with literal messages; dynamic messages would grow the cache unbounded.
+     *
+     * @param message The constant error message
+     * @return The UTF-8 encoded {@link ErrorResponse} JSON
+     */
+    public byte[] staticErrorBody(String message) {
+        return staticErrorBodies.computeIfAbsent(message, this::encodeError);
+    }
+
+    /**
+     * Writes a constant error message straight into the servlet output buffer
+     */
+    public void writeStaticError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        byte[] body = staticErrorBody(message);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Encodes an answer once, for bodies that are kept and sent many times
+     */
+    public byte[] encode(AskResponse askResponse) {
+        try {
+            return askResponseWriter.writeValueAsBytes(askResponse);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error encoding answer", e);
+        }
+    }
+
+    /**
+     * Writes one item of a batch answer stream as a single NDJSON line
+     */
+    public void writeLine(OutputStream out, AskBatchItem item) throws IOException {
+        askBatchItemWriter.writeValue(out, item);
+        out.write('\n');
+    }
+
+    private byte[] encodeError(String message) {
+        try {
+            return errorResponseWriter.writeValueAsBytes(new ErrorResponse(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error encoding error response", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bng.util;
+
+import com.bng.exception.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Time budget of one request, set by {@code JwtAuthenticationFilter} from the client's
+ * {@code X-Request-Timeout-Ms} header or the configured default, and passed down to the upstream call.
+ * Cancelling it aborts the blocking call currently registered through {@link #onCancel(Runnable)}.
+ */
+public class RequestDeadline {
+
+    public static final String REQUEST_ATTRIBUTE = RequestDeadline.class.getName();
+
+    private static final long UNBOUNDED = -1;
+
+    private final long expiresAtNanos;
+    private volatile boolean cancelled;
+    private final AtomicReference<Runnable> abortAction = new AtomicReference<>();
+
+    private RequestDeadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static RequestDeadline after(long budgetMs) {
+        return new RequestDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+    }
+
+    /**
+     * A deadline that never expires, for background work such as the cache warm-up
+     */
+    public static RequestDeadline none() {
+        return new RequestDeadline(UNBOUNDED);
+    }
+
+    /**
+     * @return Milliseconds left, 0 once expired or cancelled, Long.MAX_VALUE if unbounded
+     */
+    public long remainingMs() {
+        if (cancelled) {
+            return 0;
+        }
+        if (expiresAtNanos == UNBOUNDED) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return remainingMs() == 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gives up on the request, e.g. because the client went away, and aborts the registered call
+     */
+    public void cancel() {
+        cancelled = true;
+        Runnable abort = abortAction.getAndSet(null);
+        if (abort != null) {
+            abort.run();
+        }
+    }
+
+    /**
+     * Registers how to abort the blocking call made on this request's behalf, replacing any previous one.
+     * Runs it right away if the request is already cancelled.
+     */
+    public void onCancel(Runnable abort) {
+        abortAction.set(abort);
+        if (cancelled && abortAction.compareAndSet(abort, null)) {
+            abort.run();
+        }
+    }
+
+    public void clearOnCancel() {
+        abortAction.set(null);
+    }
+
+    /**
+     * @throws DeadlineExceededException If no time is left
+     */
+    public void check(String stage) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded " + stage);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.bng.util;
+
+/**
+ * 64-bit string hash shared by the analytics sketches.
+ * Sketches built on different nodes must hash identically to be mergeable, so this is deliberately
+ * seedless and independent of {@link String#hashCode()}.
+ */
+public final class SketchHashing {
+
+    private SketchHashing() {
+    }
+
+    public static long hash64(CharSequence value) {
+        // FNV-1a over the UTF-16 units, then the MurmurHash3 finalizer to spread the bits
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
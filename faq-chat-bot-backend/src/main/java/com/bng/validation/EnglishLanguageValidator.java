@@ -1,5 +1,6 @@
 package com.bng.validation;
 
+import com.bng.util.AskStageEvents;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
 
@@ -7,6 +8,16 @@ public class EnglishLanguageValidator implements ConstraintValidator<EnglishLang
 
     @Override
     public boolean isValid(String value, ConstraintValidatorContext context) {
+        AskStageEvents.LanguageValidation event = new AskStageEvents.LanguageValidation();
+        event.begin();
+        boolean valid = isEnglish(value);
+        event.questionLength = value == null ? 0 : value.length();
+        event.outcome = valid ? "ok" : "rejected";
+        event.commit();
+        return valid;
+    }
+
+    private static boolean isEnglish(String value) {
         if (value == null) {
             return true; // @NotBlank will handle null/empty separately
         }
@@ -0,0 +1,122 @@
+package com.bng.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the chat-completions API with configurable latency and error rate.
+ * Latency is log-normal around a median, so the tail can be made as heavy as a real upstream's.
+ * Batched requests (a user message holding a "questions" array) get one answer per question.
+ */
+public class FakeChatCompletionsServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile double medianLatencyMs;
+    private volatile double latencySigma;
+    private volatile double errorRate;
+
+    public FakeChatCompletionsServer(double medianLatencyMs, double latencySigma, double errorRate) throws IOException {
+        configure(medianLatencyMs, latencySigma, errorRate);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Changes the behaviour of subsequent requests, e.g. to simulate a brownout mid-run
+     */
+    public void configure(double medianLatencyMs, double latencySigma, double errorRate) {
+        this.medianLatencyMs = medianLatencyMs;
+        this.latencySigma = latencySigma;
+        this.errorRate = errorRate;
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long delayMs = Math.round(medianLatencyMs * Math.exp(latencySigma * random.nextGaussian()));
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (random.nextDouble() < errorRate) {
+            send(exchange, 503, "{\"error\":{\"message\":\"upstream overloaded\"}}".getBytes());
+            return;
+        }
+
+        String userContent = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                userContent = message.path("content").asText();
+            }
+        }
+        String content = isBatch(userContent) ? batchAnswer(userContent) : "Fake answer to: " + userContent;
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", "chatcmpl-fake-" + requests.get());
+        response.put("model", request.path("model").asText("fake"));
+        ObjectNode message = response.putArray("choices").addObject().putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        ObjectNode usage = response.putObject("usage");
+        usage.put("prompt_tokens", 400);
+        usage.put("completion_tokens", content.length() / 4);
+        usage.put("total_tokens", 400 + content.length() / 4);
+        usage.putObject("prompt_tokens_details").put("cached_tokens", 256);
+
+        send(exchange, 200, objectMapper.writeValueAsBytes(response));
+    }
+
+    private boolean isBatch(String userContent) {
+        return userContent.startsWith("{") && userContent.contains("\"questions\"");
+    }
+
+    private String batchAnswer(String userContent) throws IOException {
+        ObjectNode answers = objectMapper.createObjectNode();
+        ArrayNode list = answers.putArray("answers");
+        for (JsonNode question : objectMapper.readTree(userContent).path("questions")) {
+            list.add("Fake answer to: " + question.path("question").asText());
+        }
+        return objectMapper.writeValueAsString(answers);
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,100 @@
+package com.bng.loadtest;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summarizes the ask pipeline stage events ({@code com.bng.ask.*}) of one or more JFR recordings:
+ * per stage the number of events, latency percentiles, the share of all stage time it accounts for
+ * and how often each outcome occurred. Recordings are made with {@code jfr/ask-pipeline.jfc}, or
+ * dumped from a running server with {@code jcmd <pid> JFR.dump filename=ask.jfr}.
+ * <p>
+ * Run with: {@code mvn -Ploadtest test-compile exec:java@jfr-report -Dexec.args="ask.jfr"}
+ */
+public class JfrStageReport {
+
+    private static final String EVENT_PREFIX = "com.bng.ask.";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: JfrStageReport <recording.jfr>...");
+            System.exit(1);
+        }
+        List<Path> recordings = new ArrayList<>();
+        for (String arg : args) {
+            recordings.add(Paths.get(arg));
+        }
+        print(summarize(recordings), System.out);
+    }
+
+    /**
+     * @return Statistics per stage, keyed by stage name without the event prefix
+     */
+    static Map<String, StageStats> summarize(List<Path> recordings) throws IOException {
+        Map<String, StageStats> stages = new TreeMap<>();
+        for (Path recording : recordings) {
+            try (RecordingFile file = new RecordingFile(recording)) {
+                while (file.hasMoreEvents()) {
+                    RecordedEvent event = file.readEvent();
+                    String name = event.getEventType().getName();
+                    if (name.startsWith(EVENT_PREFIX)) {
+                        stages.computeIfAbsent(name.substring(EVENT_PREFIX.length()), s -> new StageStats()).add(event);
+                    }
+                }
+            }
+        }
+        return stages;
+    }
+
+    static void print(Map<String, StageStats> stages, PrintStream out) {
+        long totalMicros = 0;
+        for (StageStats stats : stages.values()) {
+            totalMicros += stats.totalMicros;
+        }
+        out.printf("%-20s %8s %9s %9s %9s %9s %6s  %s%n", "stage", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "share", "outcomes");
+        for (Map.Entry<String, StageStats> entry : stages.entrySet()) {
+            StageStats stats = entry.getValue();
+            Histogram histogram = stats.latencyMicros;
+            out.printf("%-20s %8d %9.2f %9.2f %9.2f %9.2f %5.1f%%  %s%n", entry.getKey(), histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    totalMicros == 0 ? 0 : 100.0 * stats.totalMicros / totalMicros,
+                    stats.outcomes);
+        }
+    }
+
+    static final class StageStats {
+        private final Histogram latencyMicros = new Histogram(TimeUnit.MINUTES.toMicros(10), 3);
+        private final Map<String, Integer> outcomes = new TreeMap<>();
+        private long totalMicros;
+
+        private void add(RecordedEvent event) {
+            long micros = Math.min(event.getDuration().toNanos() / 1000, latencyMicros.getHighestTrackableValue());
+            latencyMicros.recordValue(micros);
+            totalMicros += micros;
+            String outcome = event.hasField("outcome") ? event.getString("outcome") : null;
+            outcomes.merge(outcome == null ? "-" : outcome, 1, Integer::sum);
+        }
+
+        long count() {
+            return latencyMicros.getTotalCount();
+        }
+
+        Map<String, Integer> outcomes() {
+            return outcomes;
+        }
+    }
+}
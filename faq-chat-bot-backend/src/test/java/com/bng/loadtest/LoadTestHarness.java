@@ -0,0 +1,239 @@
+package com.bng.loadtest;
+
+import com.bng.FaqChatBotApplication;
+import com.bng.model.Faq;
+import com.bng.service.AskService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for /api/ask.
+ * <p>
+ * Every simulated user runs on its own virtual thread with a locally signed JWT and a fresh encrypted
+ * nonce per request, pacing itself to NonceService's one-request-per-second limit. By default the
+ * application is started in-process against a {@link FakeChatCompletionsServer}; pass
+ * {@code --target=http://host:port} (plus JWT_SECRET and NONCE_ENCRYPTION_KEY in the environment)
+ * to drive an already running instance instead.
+ * <p>
+ * Scenarios: {@code cache-hot} asks precomputed FAQ questions, {@code cache-cold} asks a unique question
+ * per request, {@code upstream-degraded} does the same while the fake upstream is slow and failing.
+ * Latency histograms are printed per scenario and written to {@code target/loadtest/<scenario>.hgrm}.
+ * <p>
+ * Run with: {@code mvn -Ploadtest test-compile exec:java@load-test -Dexec.args="--users=2000 --requests-per-user=5"}
+ */
+public class LoadTestHarness {
+
+    private static final String JWT_SECRET = "load-test-jwt-secret-that-is-long-enough-for-hs256";
+    private static final String NONCE_KEY = "LoadTestNonceKey";
+
+    // Kept above NonceService's one-request-per-second limit
+    private static final long USER_PACING_MS = 1100;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "2000"));
+        int requestsPerUser = Integer.parseInt(options.getOrDefault("requests-per-user", "5"));
+        double upstreamMedianMs = Double.parseDouble(options.getOrDefault("upstream-median-ms", "800"));
+        List<String> scenarios = List.of(options.getOrDefault("scenarios", "cache-hot,cache-cold,upstream-degraded").split(","));
+
+        try (FakeChatCompletionsServer upstream = new FakeChatCompletionsServer(upstreamMedianMs, 0.4, 0.0)) {
+            String target = options.get("target");
+            ConfigurableApplicationContext application = null;
+            SignedRequestFactory requests;
+            if (target == null) {
+                application = startApplication(upstream.url());
+                target = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+                requests = new SignedRequestFactory(target, JWT_SECRET, NONCE_KEY);
+            } else {
+                requests = new SignedRequestFactory(target, System.getenv("JWT_SECRET"), System.getenv("NONCE_ENCRYPTION_KEY"));
+            }
+
+            List<String> hotQuestions = loadFaqQuestions();
+            if (application != null) {
+                AskService askService = application.getBean(AskService.class);
+                for (String question : hotQuestions) {
+                    askService.precomputeAnswer(question);
+                }
+            }
+
+            System.out.printf("Target %s, %d users x %d requests per scenario%n", target, users, requestsPerUser);
+            try {
+                for (String scenario : scenarios) {
+                    switch (scenario) {
+                        case "cache-hot", "cache-cold" -> upstream.configure(upstreamMedianMs, 0.4, 0.0);
+                        case "upstream-degraded" -> upstream.configure(upstreamMedianMs * 5, 1.0, 0.2);
+                        default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+                    }
+                    long upstreamBefore = upstream.requestCount();
+                    ScenarioResult result = runScenario(scenario, users, requestsPerUser, requests, hotQuestions);
+                    report(result, upstream.requestCount() - upstreamBefore);
+                }
+            } finally {
+                if (application != null) {
+                    application.close();
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(String upstreamUrl) {
+        return SpringApplication.run(FaqChatBotApplication.class,
+                "--server.port=0",
+                "--openai.api.url=" + upstreamUrl,
+                "--openai.api.key=load-test",
+                "--jwt.secret=" + JWT_SECRET,
+                "--nonce.encryption.key=" + NONCE_KEY,
+                "--cache.warm-up.enabled=false",
+                "--cache.disk.enabled=false",
+                "--cache.snapshot.path=target/loadtest/answers.snapshot",
+                "--logging.level.com.bng=WARN");
+    }
+
+    private static ScenarioResult runScenario(String scenario, int users, int requestsPerUser,
+                                              SignedRequestFactory requests, List<String> hotQuestions) throws InterruptedException {
+        ScenarioResult result = new ScenarioResult(scenario);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String prefix = "lt" + scenario.charAt(scenario.indexOf('-') + 1);
+
+        long start = System.nanoTime();
+        try (ExecutorService userThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < users; u++) {
+                int userIndex = u;
+                userThreads.execute(() -> runUser(scenario, prefix + userIndex, userIndex, requestsPerUser,
+                        requests, client, hotQuestions, result));
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void runUser(String scenario, String username, int userIndex, int requestsPerUser,
+                                SignedRequestFactory requests, HttpClient client, List<String> hotQuestions,
+                                ScenarioResult result) {
+        String token = requests.token(username, TimeUnit.HOURS.toMillis(1));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            // Spread user start times so the run does not begin with one synchronized burst
+            Thread.sleep(random.nextLong(USER_PACING_MS));
+            for (int i = 0; i < requestsPerUser; i++) {
+                String question = scenario.equals("cache-hot")
+                        ? hotQuestions.get(random.nextInt(hotQuestions.size()))
+                        : "What does the Gita teach about duty in situation " + userIndex + "-" + i + "?";
+
+                long sent = System.nanoTime();
+                int status;
+                try {
+                    HttpResponse<Void> response = client.send(requests.ask(username, token, question), HttpResponse.BodyHandlers.discarding());
+                    status = response.statusCode();
+                } catch (IOException e) {
+                    status = -1;
+                }
+                long latencyNanos = System.nanoTime() - sent;
+                result.record(status, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+                long pauseMs = USER_PACING_MS - TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+                if (pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void report(ScenarioResult result, long upstreamCalls) throws IOException {
+        Histogram histogram = result.latencyMicros;
+        long total = histogram.getTotalCount();
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.printf("%n== %s ==%n", result.scenario);
+        System.out.printf("requests=%d ok=%d failed=%d throughput=%.1f req/s upstream-calls=%d%n",
+                total, result.ok.sum(), result.failed.sum(), total / seconds, upstreamCalls);
+        System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+        System.out.printf("status codes: %s%n", new TreeMap<>(result.statusCounts()));
+
+        Path output = Paths.get("target", "loadtest", result.scenario + ".hgrm");
+        Files.createDirectories(output.getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(output))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static List<String> loadFaqQuestions() throws IOException {
+        List<Faq> faqs = new ObjectMapper().readValue(new ClassPathResource("faqs.json").getInputStream(), new TypeReference<List<Faq>>() {});
+        List<String> questions = new ArrayList<>();
+        for (Faq faq : faqs) {
+            questions.add(faq.getQuestion());
+        }
+        return questions;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static final class ScenarioResult {
+        private final String scenario;
+        // Up to ten minutes at three significant digits
+        private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        private ScenarioResult(String scenario) {
+            this.scenario = scenario;
+        }
+
+        private void record(int status, long latencyMicros) {
+            this.latencyMicros.recordValue(Math.min(latencyMicros, this.latencyMicros.getHighestTrackableValue()));
+            (status == 200 ? ok : failed).increment();
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        private Map<Integer, Long> statusCounts() {
+            Map<Integer, Long> counts = new HashMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+    }
+}
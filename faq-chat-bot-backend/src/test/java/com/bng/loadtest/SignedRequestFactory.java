@@ -0,0 +1,82 @@
+package com.bng.loadtest;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Builds /api/ask requests that pass JwtAuthenticationFilter: a JWT carrying the username claim,
+ * a fresh AES-encrypted X-Nonce and a current X-Timestamp.
+ * Tokens are signed locally with the server's secret, so no /api/auth/token round trip is needed per user.
+ */
+public class SignedRequestFactory {
+
+    private final String baseUrl;
+    private final SecretKey jwtKey;
+    private final SecretKeySpec nonceKey;
+    private final SecureRandom random = new SecureRandom();
+
+    public SignedRequestFactory(String baseUrl, String jwtSecret, String nonceEncryptionKey) {
+        this.baseUrl = baseUrl;
+        this.jwtKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.nonceKey = new SecretKeySpec(nonceEncryptionKey.getBytes(StandardCharsets.UTF_8), "AES");
+    }
+
+    public String token(String username, long ttlMs) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setClaims(Map.of("username", username))
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + ttlMs))
+                .signWith(jwtKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    public HttpRequest ask(String username, String token, String question) {
+        String body = "{\"question\":\"" + question.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/ask?username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .header("X-Nonce", nonce())
+                .header("X-Timestamp", Long.toString(System.currentTimeMillis()))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /**
+     * Same construction as the frontend: Base64(IV || AES-CBC("timestamp:random hex"))
+     */
+    public String nonce() {
+        byte[] iv = new byte[16];
+        byte[] randomData = new byte[16];
+        random.nextBytes(iv);
+        random.nextBytes(randomData);
+        String plaintext = System.currentTimeMillis() + ":" + HexFormat.of().formatHex(randomData);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, nonceKey, new IvParameterSpec(iv));
+            byte[] encrypted = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+            byte[] combined = new byte[iv.length + encrypted.length];
+            System.arraycopy(iv, 0, combined, 0, iv.length);
+            System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+            return Base64.getEncoder().encodeToString(combined);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error encrypting nonce", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.bng.loadtest;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.bng.model.AnswerSource;
+import com.bng.service.impl.ChatLogServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Shows what a slow log disk does to request latency with a synchronous appender and with the
+ * asynchronous setup of {@code logback-spring.xml} (same queue size, discarding threshold and neverBlock).
+ * <p>
+ * Each simulated request does {@code --work-ms} of work and the logging of the /api/ask path: one
+ * structured INFO event, one DEBUG event below the threshold and its chat log entry, which
+ * {@link ChatLogServiceImpl} hands to its background writer (in a temporary directory). The "disk" of the
+ * application log is an output stream that stalls {@code --disk-delay-ms} per flush. Latency percentiles and the number of events that reached
+ * the disk are printed for a fast and a slow disk, per appender.
+ * <p>
+ * Run with: {@code mvn -Ploadtest test-compile exec:java@logging-benchmark -Dexec.args="--disk-delay-ms=5"}
+ */
+public class SlowDiskLoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} [%thread] %-5level %logger{36} - %msg %kvp%n";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "32"));
+        int requestsPerThread = Integer.parseInt(options.getOrDefault("requests-per-thread", "200"));
+        long workMs = Long.parseLong(options.getOrDefault("work-ms", "2"));
+        long diskDelayMs = Long.parseLong(options.getOrDefault("disk-delay-ms", "5"));
+        int queueSize = Integer.parseInt(options.getOrDefault("queue-size", "8192"));
+        int discardingThreshold = Integer.parseInt(options.getOrDefault("discarding-threshold", "1638"));
+
+        System.out.printf("%d threads x %d requests, %d ms work per request%n", threads, requestsPerThread, workMs);
+        for (long delayMs : new long[] {0, diskDelayMs}) {
+            for (boolean async : new boolean[] {false, true}) {
+                run(async, delayMs, threads, requestsPerThread, workMs, queueSize, discardingThreshold);
+            }
+        }
+    }
+
+    private static void run(boolean async, long diskDelayMs, int threads, int requestsPerThread, long workMs,
+                            int queueSize, int discardingThreshold) throws InterruptedException, IOException {
+        LoggerContext context = new LoggerContext();
+        context.start();
+        SlowOutputStream disk = new SlowOutputStream(diskDelayMs);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> file = new OutputStreamAppender<>();
+        file.setContext(context);
+        file.setEncoder(encoder);
+        file.setOutputStream(disk);
+        file.start();
+
+        Appender<ILoggingEvent> appender = file;
+        if (async) {
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(queueSize);
+            asyncAppender.setDiscardingThreshold(discardingThreshold);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.setIncludeCallerData(false);
+            asyncAppender.addAppender(file);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+        Logger logger = context.getLogger("com.bng.service.impl.AskServiceImpl");
+        Path chatLogDir = Files.createTempDirectory("chat-logs");
+        ChatLogServiceImpl chatLog = new ChatLogServiceImpl(new ObjectMapper().findAndRegisterModules(), event -> { },
+                chatLogDir.toString(), 10_000);
+
+        ConcurrentHistogram latencyMicros = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                String username = "user" + t;
+                executor.execute(() -> {
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        long requestStart = System.nanoTime();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(workMs));
+                        logger.atInfo().setMessage("Answered from cache")
+                                .addKeyValue("user", username)
+                                .addKeyValue("questionChars", 42)
+                                .addKeyValue("answerChars", 512)
+                                .log();
+                        logger.debug("Batch for user [{}]: {} questions", username, 1);
+                        chatLog.logChat(username, "What is question " + i + "?", "Answer " + i, AnswerSource.CACHE);
+                        latencyMicros.recordValue((System.nanoTime() - requestStart) / 1000);
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        context.stop();
+        chatLog.shutdown();
+        try (Stream<Path> files = Files.walk(chatLogDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+
+        report(async ? "async" : "sync", diskDelayMs, latencyMicros, seconds, disk.lines.sum(), (long) threads * requestsPerThread);
+    }
+
+    private static void report(String appender, long diskDelayMs, Histogram histogram, double seconds,
+                               long written, long issued) {
+        System.out.printf("%n== %s appender, disk delay %d ms ==%n", appender, diskDelayMs);
+        System.out.printf("requests=%d throughput=%.1f req/s events written=%d of %d%n",
+                histogram.getTotalCount(), histogram.getTotalCount() / seconds, written, issued);
+        System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Discards what is written, stalling on every flush like a saturated disk, and counts the lines
+     */
+    private static final class SlowOutputStream extends OutputStream {
+        private final long delayNanos;
+        private final LongAdder lines = new LongAdder();
+
+        private SlowOutputStream(long delayMs) {
+            this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines.increment();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    lines.increment();
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bng.service;
+
+import com.bng.exception.LaneSaturatedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AskLanesTest {
+
+	private final AskLanes lanes = new AskLanes(new SimpleMeterRegistry(), 1, 1, 3);
+	private final CountDownLatch upstreamReleased = new CountDownLatch(1);
+
+	@AfterEach
+	void tearDown() {
+		upstreamReleased.countDown();
+		lanes.shutdown();
+	}
+
+	@Test
+	void fullUpstreamLaneFailsFastWithRetryAfter() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		lanes.submitUpstream(() -> {
+			started.countDown();
+			awaitRelease();
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		// One worker busy, one slot in the queue
+		lanes.submitUpstream(this::awaitRelease);
+
+		LaneSaturatedException rejected = assertThrows(LaneSaturatedException.class, () -> lanes.submitUpstream(() -> { }));
+		assertEquals(3, rejected.getRetryAfterSeconds());
+	}
+
+	@Test
+	void cacheLaneIsServedWhileUpstreamLaneIsSaturated() {
+		lanes.submitUpstream(this::awaitRelease);
+		lanes.submitUpstream(this::awaitRelease);
+
+		assertEquals("cached answer", lanes.serveFromCache(() -> "cached answer"));
+	}
+
+	private void awaitRelease() {
+		try {
+			upstreamReleased.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.bng.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheWarmUpServiceTest {
+
+	@TempDir
+	Path logDir;
+
+	private CacheWarmUpService newService(int topN, int historyDays) {
+		return new CacheWarmUpService(null, null, null, new ObjectMapper().findAndRegisterModules(),
+				logDir.toString(), logDir.resolve("answers.snapshot").toString(), false, topN, historyDays, 1, 1);
+	}
+
+	@Test
+	void ranksTheMostFrequentQuestionsOfTheNewestLogs() throws IOException {
+		writeLog("2026-10-17", "What is karma?", "What is karma?", "What is karma?", "What is karma?");
+		writeLog("2026-10-18", "What is dharma?", "  what   is DHARMA? ", "Who is Arjuna?");
+		writeLog("2026-10-19", "What is dharma?", "Who is Arjuna?", "What is dharma?", "What is yoga?");
+
+		// The oldest day is beyond the two days of history, so its four karma questions do not count
+		assertEquals(List.of("What is dharma?", "Who is Arjuna?"), newService(2, 2).mineFrequentQuestions(logDir));
+	}
+
+	@Test
+	void skipsFallbackAnswersAndUnreadableLogs() throws IOException {
+		writeLog("2026-10-18", "What is yoga?");
+		Files.writeString(logDir.resolve("chat_logs_2026-10-19.json"),
+				"[" + entry("What is moksha?", OpenAiClient.FALLBACK_ANSWER) + "," + entry("What is moksha?", OpenAiClient.FALLBACK_ANSWER) + "]");
+		Files.writeString(logDir.resolve("chat_logs_2026-10-20.json"), "[{\"question\": ");
+		Files.writeString(logDir.resolve("notes.json"), "[" + entry("What is karma?", "Action.") + "]");
+
+		assertEquals(List.of("What is yoga?"), newService(5, 7).mineFrequentQuestions(logDir));
+	}
+
+	@Test
+	void withoutLogsThereIsNothingToMine() {
+		assertEquals(List.of(), newService(5, 7).mineFrequentQuestions(logDir.resolve("missing")));
+	}
+
+	private void writeLog(String day, String... questions) throws IOException {
+		List<String> entries = new ArrayList<>();
+		for (String question : questions) {
+			entries.add(entry(question, "An answer."));
+		}
+		Files.writeString(logDir.resolve("chat_logs_" + day + ".json"), "[" + String.join(",", entries) + "]");
+	}
+
+	private static String entry(String question, String answer) {
+		return "{\"username\":\"alice\",\"question\":\"" + question + "\",\"answer\":\"" + answer + "\",\"timestamp\":\"2026-10-19T10:00:00\"}";
+	}
+}
@@ -0,0 +1,81 @@
+package com.bng.service;
+
+import com.bng.model.AnalyticsSketch;
+import com.bng.model.AnalyticsSummary;
+import com.bng.model.QuestionStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatAnalyticsServiceTest {
+
+	private static final Instant NOW = Instant.parse("2025-05-20T10:30:00Z");
+
+	private ChatAnalyticsService newService() {
+		return new ChatAnalyticsService(60, 5, 20, 4, 2048, 14);
+	}
+
+	@Test
+	void ranksQuestionsAndTracksHitRatePerQuestion() {
+		ChatAnalyticsService analytics = newService();
+		for (int i = 0; i < 30; i++) {
+			analytics.record("user" + i, "How do I reset my password?", i % 3 != 0, NOW);
+		}
+		for (int i = 0; i < 10; i++) {
+			analytics.record("user" + i, "  how do I   RESET my password? ", true, NOW);
+			analytics.record("user" + i, "What are your opening hours?", false, NOW);
+		}
+		for (int i = 0; i < 200; i++) {
+			analytics.record("user" + i, "rare question " + i, false, NOW);
+		}
+
+		AnalyticsSummary summary = ChatAnalyticsService.summarize(List.of(analytics.sketch(NOW)), 2);
+		List<QuestionStats> top = summary.getTopQuestions();
+		assertEquals(2, top.size());
+		assertEquals("how do i reset my password?", top.get(0).getQuestion());
+		assertEquals(40, top.get(0).getCount());
+		assertEquals(0.75, top.get(0).getCacheHitRate(), 0.01);
+		assertEquals("what are your opening hours?", top.get(1).getQuestion());
+		assertEquals(250, summary.getQuestions());
+		assertEquals(200, summary.getDistinctUsersToday(), 4);
+	}
+
+	@Test
+	void forgetsQuestionsOlderThanTheWindow() {
+		ChatAnalyticsService analytics = newService();
+		analytics.record("alice", "old question", false, NOW.minus(Duration.ofMinutes(70)));
+		analytics.record("bob", "new question", false, NOW);
+
+		AnalyticsSummary summary = ChatAnalyticsService.summarize(List.of(analytics.sketch(NOW)), 10);
+		assertEquals(1, summary.getQuestions());
+		assertEquals("new question", summary.getTopQuestions().get(0).getQuestion());
+		assertEquals(60, summary.getWindowMinutes());
+	}
+
+	@Test
+	void mergesSketchesOfSeveralNodes() {
+		ChatAnalyticsService first = newService();
+		ChatAnalyticsService second = newService();
+		for (int i = 0; i < 1000; i++) {
+			first.record("user" + i, "shared question", true, NOW);
+			second.record("user" + (i + 500), "shared question", false, NOW);
+		}
+		second.record("carol", "only on the second node", false, NOW);
+
+		List<AnalyticsSketch> sketches = List.of(first.sketch(NOW), second.sketch(NOW));
+		AnalyticsSummary summary = ChatAnalyticsService.summarize(sketches, 10);
+
+		assertEquals(2001, summary.getQuestions());
+		assertEquals(2000, summary.getTopQuestions().get(0).getCount());
+		assertEquals(0.5, summary.getTopQuestions().get(0).getCacheHitRate(), 0.01);
+		assertEquals(2, summary.getTopQuestions().size());
+		// 1500 distinct users in total, within a few standard errors
+		long distinct = summary.getDistinctUsersToday();
+		assertTrue(distinct > 1450 && distinct < 1550, "distinct users estimate " + distinct);
+	}
+}
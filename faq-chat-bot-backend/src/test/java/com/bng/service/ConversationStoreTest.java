@@ -0,0 +1,83 @@
+package com.bng.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationStoreTest {
+
+	private static final Instant START = Instant.parse("2026-10-19T10:00:00Z");
+	private static final String LONG_ANSWER = "Act without attachment to the fruits of your actions. "
+			+ "The Gita teaches that duty performed with equanimity frees the mind from anxiety. ".repeat(12);
+
+	private ConversationStore newStore(int maxTurns, int tokenBudget, int maxUsers) {
+		return new ConversationStore(new SimpleMeterRegistry(), maxTurns, tokenBudget, Duration.ofMinutes(30).toMillis(), maxUsers);
+	}
+
+	@Test
+	void keepsRecentTurnsInOrder() {
+		ConversationStore store = newStore(6, 600, 100);
+		store.record("alice", "What is karma?", "Action and its consequence.", START);
+		store.record("alice", "And dharma?", "Your rightful duty.", START.plusSeconds(10));
+
+		String context = store.context("alice", START.plusSeconds(20));
+		assertNotNull(context);
+		assertTrue(context.indexOf("What is karma?") < context.indexOf("And dharma?"));
+		assertFalse(context.contains("Summary"));
+		assertNull(store.context("bob", START.plusSeconds(20)));
+	}
+
+	@Test
+	void contextStaysWithinTheBudgetAsTheConversationGrows() {
+		ConversationStore store = newStore(6, 300, 100);
+		int longest = 0;
+		for (int i = 0; i < 200; i++) {
+			store.record("alice", "Question number " + i + "?", LONG_ANSWER, START.plusSeconds(i));
+			longest = Math.max(longest, ConversationStore.estimateTokens(store.context("alice", START.plusSeconds(i))));
+		}
+		assertTrue(longest <= 300, "context grew to " + longest + " tokens");
+
+		String context = store.context("alice", START.plusSeconds(200));
+		assertTrue(context.contains("Question number 199?"));
+		// Older turns survive as summary lines with the gist of their answer
+		assertTrue(context.contains("Summary of the earlier conversation"));
+		assertTrue(context.contains("told: Act without attachment to the fruits of your actions."));
+		assertFalse(context.contains("Question number 0?"));
+	}
+
+	@Test
+	void dropsIdleConversations() {
+		ConversationStore store = newStore(6, 600, 100);
+		store.record("alice", "What is karma?", "Action and its consequence.", START);
+		store.record("bob", "What is yoga?", "Union.", START.plus(Duration.ofMinutes(20)));
+
+		assertNull(store.context("alice", START.plus(Duration.ofMinutes(31))));
+		store.purgeIdle(START.plus(Duration.ofMinutes(31)));
+		assertEquals(1, store.size());
+
+		// A question after the timeout starts a new conversation
+		store.record("alice", "Who is Arjuna?", "A warrior prince.", START.plus(Duration.ofMinutes(40)));
+		assertFalse(store.context("alice", START.plus(Duration.ofMinutes(41))).contains("karma"));
+	}
+
+	@Test
+	void evictsTheLeastRecentlyActiveUsersBeyondTheCap() {
+		ConversationStore store = newStore(6, 600, 2);
+		store.record("alice", "What is karma?", "Action.", START);
+		store.record("bob", "What is yoga?", "Union.", START.plusSeconds(1));
+		store.context("alice", START.plusSeconds(2));
+		store.record("carol", "What is moksha?", "Liberation.", START.plusSeconds(3));
+
+		assertEquals(2, store.size());
+		assertNotNull(store.context("alice", START.plusSeconds(4)));
+		assertNull(store.context("bob", START.plusSeconds(4)));
+	}
+}
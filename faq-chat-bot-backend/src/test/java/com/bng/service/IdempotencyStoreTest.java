@@ -0,0 +1,90 @@
+package com.bng.service;
+
+import com.bng.exception.DeadlineExceededException;
+import com.bng.exception.IdempotencyKeyReusedException;
+import com.bng.model.AskResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyStoreTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void retriesShareTheFirstComputation() throws Exception {
+		IdempotencyStore store = new IdempotencyStore(meterRegistry, 60_000, 100);
+		IdempotencyStore.Claim first = store.claim("alice", "key-1", "What is dharma?");
+		assertTrue(first.isOwner());
+		CompletableFuture<AskResponse> upstream = new CompletableFuture<>();
+		store.track(first, upstream);
+
+		IdempotencyStore.Claim retry = store.claim("alice", "key-1", "What is dharma?");
+		assertFalse(retry.isOwner());
+		assertEquals(IdempotencyStore.Outcome.ATTACHED, retry.outcome());
+		assertFalse(retry.answer().isDone());
+
+		AskResponse answer = new AskResponse("Your own duty, done well.");
+		upstream.complete(answer);
+		assertSame(answer, retry.answer().get());
+
+		IdempotencyStore.Claim late = store.claim("alice", "key-1", "What is dharma?");
+		assertEquals(IdempotencyStore.Outcome.REPLAYED, late.outcome());
+		assertSame(answer, late.answer().get());
+
+		assertEquals(1.0, meterRegistry.counter("ask.idempotency.requests", "outcome", "new").count());
+		assertEquals(1.0, meterRegistry.counter("ask.idempotency.requests", "outcome", "attached").count());
+		assertEquals(1.0, meterRegistry.counter("ask.idempotency.requests", "outcome", "replayed").count());
+	}
+
+	@Test
+	void keysAreScopedPerUser() {
+		IdempotencyStore store = new IdempotencyStore(meterRegistry, 60_000, 100);
+		assertTrue(store.claim("alice", "key-1", "What is dharma?").isOwner());
+		assertTrue(store.claim("bob", "key-1", "What is dharma?").isOwner());
+	}
+
+	@Test
+	void failedComputationIsForgotten() {
+		IdempotencyStore store = new IdempotencyStore(meterRegistry, 60_000, 100);
+		IdempotencyStore.Claim first = store.claim("alice", "key-1", "What is karma?");
+		IdempotencyStore.Claim retry = store.claim("alice", "key-1", "What is karma?");
+		store.track(first, CompletableFuture.failedFuture(new DeadlineExceededException("Request deadline exceeded")));
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> retry.answer().get());
+		assertInstanceOf(DeadlineExceededException.class, failure.getCause());
+		assertEquals(0, store.size());
+		assertTrue(store.claim("alice", "key-1", "What is karma?").isOwner());
+	}
+
+	@Test
+	void refusesAKeyReusedForAnotherQuestion() {
+		IdempotencyStore store = new IdempotencyStore(meterRegistry, 60_000, 100);
+		store.claim("alice", "key-1", "What is karma?");
+		assertThrows(IdempotencyKeyReusedException.class, () -> store.claim("alice", "key-1", "What is yoga?"));
+		assertEquals(1.0, meterRegistry.counter("ask.idempotency.requests", "outcome", "conflict").count());
+	}
+
+	@Test
+	void entriesExpireAndStayBounded() throws Exception {
+		IdempotencyStore store = new IdempotencyStore(meterRegistry, 50, 3);
+		for (int i = 0; i < 5; i++) {
+			store.claim("alice", "key-" + i, "What is karma?");
+		}
+		assertEquals(3, store.size());
+		assertTrue(store.claim("alice", "key-0", "What is karma?").isOwner());
+
+		Thread.sleep(100);
+		assertTrue(store.claim("alice", "key-4", "What is karma?").isOwner());
+		assertEquals(1, store.size());
+	}
+}
@@ -0,0 +1,101 @@
+package com.bng.service;
+
+import com.bng.service.OpenAiClient.UserQuestion;
+import com.bng.util.DeadlineMetrics;
+import com.bng.util.RequestDeadline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmRouterTest {
+
+	private final List<StubChatCompletionsServer> servers = new ArrayList<>();
+
+	@TempDir
+	Path usageDir;
+
+	@AfterEach
+	void tearDown() {
+		servers.forEach(StubChatCompletionsServer::stop);
+	}
+
+	@Test
+	void prefersTheFasterEndpoint() {
+		// The first call in a fresh JVM pays for class loading, which would make either endpoint look slow
+		clientFor(1, startServer("warm-up", 0, 200)).getAIAnswer("system", new UserQuestion(null, null, "warm-up"), RequestDeadline.none());
+
+		StubChatCompletionsServer fast = startServer("fast", 5, 200);
+		StubChatCompletionsServer slow = startServer("slow", 150, 200);
+		OpenAiClient client = clientFor(1000, fast, slow);
+
+		for (int i = 0; i < 40; i++) {
+			client.getAIAnswer("system", new UserQuestion(null, null, "question " + i), RequestDeadline.none());
+		}
+
+		assertTrue(slow.hits.get() <= 3, "slow endpoint got " + slow.hits.get() + " calls");
+		assertEquals(40, fast.hits.get() + slow.hits.get());
+	}
+
+	@Test
+	void movesTrafficAwayFromFailingEndpoint() {
+		StubChatCompletionsServer broken = startServer("broken", 1, 500);
+		StubChatCompletionsServer healthy = startServer("healthy", 5, 200);
+		OpenAiClient client = clientFor(1000, broken, healthy);
+
+		for (int i = 0; i < 30; i++) {
+			assertEquals("answer from healthy", client.getAIAnswer("system", new UserQuestion(null, null, "question " + i), RequestDeadline.none()));
+		}
+
+		// Once ejected, the broken endpoint stays out of rotation for the cooldown
+		assertTrue(broken.hits.get() <= 5, "broken endpoint got " + broken.hits.get() + " calls");
+	}
+
+	@Test
+	void spillsOverWhenConcurrencyLimitIsReached() throws Exception {
+		StubChatCompletionsServer limited = startServer("limited", 200, 200);
+		StubChatCompletionsServer spare = startServer("spare", 200, 200);
+		OpenAiClient client = clientFor(1, limited, spare);
+
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<String>> answers = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				answers.add(callers.submit(() -> client.getAIAnswer("system", new UserQuestion(null, null, "question"), RequestDeadline.none())));
+			}
+			for (Future<String> answer : answers) {
+				answer.get();
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+
+		assertEquals(1, limited.hits.get());
+		assertEquals(1, spare.hits.get());
+	}
+
+	private OpenAiClient clientFor(int maxConcurrency, StubChatCompletionsServer... stubs) {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		TokenAccountingService tokenAccounting = new TokenAccountingService(new ObjectMapper(), meterRegistry, usageDir.toString(), 0);
+		return new OpenAiClient(new ObjectMapper(), new LlmRouter(StubChatCompletionsServer.routing(maxConcurrency, stubs)),
+				meterRegistry, new DeadlineMetrics(meterRegistry), tokenAccounting, 500);
+	}
+
+	private StubChatCompletionsServer startServer(String name, long latencyMs, int status) {
+		StubChatCompletionsServer stub = StubChatCompletionsServer.start(name, latencyMs, status);
+		servers.add(stub);
+		return stub;
+	}
+}
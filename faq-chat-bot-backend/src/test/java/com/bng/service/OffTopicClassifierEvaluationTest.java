@@ -0,0 +1,69 @@
+package com.bng.service;
+
+import com.bng.model.Faq;
+import com.bng.service.OffTopicModel.Evaluation;
+import com.bng.service.OffTopicModel.Example;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Precision/recall targets of the off-topic classifier on held-out questions.
+ * Training and scoring are deterministic, so the results only change with the data or the model.
+ * The model here learns from {@code training.tsv} and the FAQ questions only; the one built by
+ * {@link OffTopicClassifier#train()} also learns from the recent chat logs, which these targets do not cover.
+ */
+class OffTopicClassifierEvaluationTest {
+
+	private static final double DEFAULT_THRESHOLD = 0.95;
+
+	@Test
+	void neverShortCircuitsInScopeQuestionsAtTheDefaultThreshold() throws IOException {
+		OffTopicModel model = trainFromBundledData();
+		List<Example> heldOut = OffTopicClassifier.readExamples(resource("/classifier/evaluation.tsv"));
+
+		Evaluation evaluation = model.evaluate(heldOut, DEFAULT_THRESHOLD);
+		assertEquals(1.0, evaluation.precision(), 0.0, "mistakes " + evaluation.mistakes());
+		assertTrue(evaluation.recall() >= 0.6, "recall " + evaluation.recall());
+	}
+
+	@Test
+	void lowerThresholdTradesPrecisionForRecall() throws IOException {
+		OffTopicModel model = trainFromBundledData();
+		List<Example> heldOut = OffTopicClassifier.readExamples(resource("/classifier/evaluation.tsv"));
+
+		Evaluation evaluation = model.evaluate(heldOut, 0.90);
+		assertTrue(evaluation.precision() >= 0.95, "precision " + evaluation.precision());
+		assertTrue(evaluation.recall() >= 0.8, "recall " + evaluation.recall());
+	}
+
+	@Test
+	void lexiconTermsVetoTheModel() throws IOException {
+		OffTopicModel model = trainFromBundledData();
+		assertEquals(0.0, model.offTopicProbability("What is the price of the Bhagavad Gita on Amazon?"), 0.0);
+		assertTrue(model.offTopicProbability("What is the price of a digital camera?") > 0);
+		assertFalse(model.offTopicProbability("hello") >= DEFAULT_THRESHOLD);
+	}
+
+	private static OffTopicModel trainFromBundledData() throws IOException {
+		List<Example> examples = new ArrayList<>(OffTopicClassifier.readExamples(resource("/classifier/training.tsv")));
+		List<Faq> faqs = new ObjectMapper().readValue(resource("/faqs.json"), new TypeReference<List<Faq>>() {});
+		for (Faq faq : faqs) {
+			examples.add(new Example(faq.getQuestion(), false));
+		}
+		return OffTopicModel.train(examples, OffTopicClassifier.readLexicon(resource("/classifier/lexicon.txt")));
+	}
+
+	private static InputStream resource(String name) {
+		return OffTopicClassifierEvaluationTest.class.getResourceAsStream(name);
+	}
+}
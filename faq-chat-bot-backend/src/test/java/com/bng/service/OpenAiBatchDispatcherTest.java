@@ -0,0 +1,133 @@
+package com.bng.service;
+
+import com.bng.exception.DeadlineExceededException;
+import com.bng.service.OpenAiClient.UserQuestion;
+import com.bng.util.DeadlineMetrics;
+import com.bng.util.RequestDeadline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OpenAiBatchDispatcherTest {
+
+	private final DeadlineMetrics deadlineMetrics = new DeadlineMetrics(new SimpleMeterRegistry());
+	private OpenAiBatchDispatcher dispatcher;
+	private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+	@AfterEach
+	void tearDown() {
+		callers.shutdownNow();
+		if (dispatcher != null) {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	void answersQueuedQuestionsWithOneUpstreamCall() throws Exception {
+		StubOpenAiClient stub = new StubOpenAiClient(false);
+		dispatcher = new OpenAiBatchDispatcher(stub, deadlineMetrics, true, 4, 200, 5000, 2);
+
+		List<Future<String>> answers = askConcurrently(4);
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("answer to q" + i, answers.get(i).get());
+		}
+		assertEquals(1, stub.batchCalls.get());
+		assertEquals(0, stub.singleCalls.get());
+	}
+
+	@Test
+	void fallsBackToSingleCallsWhenBatchReplyIsUnusable() throws Exception {
+		StubOpenAiClient stub = new StubOpenAiClient(true);
+		dispatcher = new OpenAiBatchDispatcher(stub, deadlineMetrics, true, 3, 200, 5000, 2);
+
+		List<Future<String>> answers = askConcurrently(3);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals("answer to q" + i, answers.get(i).get());
+		}
+		assertEquals(1, stub.batchCalls.get());
+		assertEquals(3, stub.singleCalls.get());
+	}
+
+	@Test
+	void latencyCapSendsQueuedQuestionOnItsOwn() throws Exception {
+		StubOpenAiClient stub = new StubOpenAiClient(false);
+		// The flush window is far longer than the cap, so the caller must give up on the batch
+		dispatcher = new OpenAiBatchDispatcher(stub, deadlineMetrics, true, 8, 10_000, 50, 2);
+
+		assertEquals("answer to q0", dispatcher.getAIAnswer("system", new UserQuestion(null, null, "q0"), RequestDeadline.after(5000)));
+		assertEquals(0, stub.batchCalls.get());
+		assertEquals(1, stub.singleCalls.get());
+	}
+
+	@Test
+	void disabledDispatcherCallsThrough() throws Exception {
+		StubOpenAiClient stub = new StubOpenAiClient(false);
+		dispatcher = new OpenAiBatchDispatcher(stub, deadlineMetrics, false, 8, 50, 2000, 1);
+
+		assertEquals("answer to q0", dispatcher.getAIAnswer("system", new UserQuestion(null, null, "q0"), RequestDeadline.after(5000)));
+		assertEquals(1, stub.singleCalls.get());
+	}
+
+	@Test
+	void expiredQuestionIsDroppedFromTheQueue() {
+		StubOpenAiClient stub = new StubOpenAiClient(false);
+		// The deadline is shorter than both the flush window and the latency cap
+		dispatcher = new OpenAiBatchDispatcher(stub, deadlineMetrics, true, 8, 10_000, 5000, 2);
+
+		assertThrows(DeadlineExceededException.class,
+				() -> dispatcher.getAIAnswer("system", new UserQuestion(null, null, "q0"), RequestDeadline.after(50)));
+		assertEquals(0, stub.batchCalls.get());
+		assertEquals(0, stub.singleCalls.get());
+	}
+
+	private List<Future<String>> askConcurrently(int count) {
+		List<Future<String>> answers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			String question = "q" + i;
+			answers.add(callers.submit(() -> dispatcher.getAIAnswer("system", new UserQuestion("user", "context", question), RequestDeadline.after(5000))));
+		}
+		return answers;
+	}
+
+	/**
+	 * Local stand-in for the upstream that answers without any network access
+	 */
+	private static class StubOpenAiClient extends OpenAiClient {
+		private final boolean failBatches;
+		private final AtomicInteger singleCalls = new AtomicInteger();
+		private final AtomicInteger batchCalls = new AtomicInteger();
+
+		StubOpenAiClient(boolean failBatches) {
+			super(new ObjectMapper(), null, new SimpleMeterRegistry(), null, null, 500);
+			this.failBatches = failBatches;
+		}
+
+		@Override
+		public String getAIAnswer(String systemPrompt, UserQuestion userQuestion, RequestDeadline deadline) {
+			singleCalls.incrementAndGet();
+			return "answer to " + userQuestion.text();
+		}
+
+		@Override
+		public List<String> getAIAnswers(String systemPrompt, List<UserQuestion> userQuestions, RequestDeadline deadline) {
+			batchCalls.incrementAndGet();
+			if (failBatches) {
+				return null;
+			}
+			return userQuestions.stream().map(q -> "answer to " + q.text()).toList();
+		}
+	}
+}
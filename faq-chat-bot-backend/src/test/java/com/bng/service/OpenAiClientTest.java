@@ -0,0 +1,132 @@
+package com.bng.service;
+
+import com.bng.exception.DeadlineExceededException;
+import com.bng.service.OpenAiClient.UserQuestion;
+import com.bng.util.DeadlineMetrics;
+import com.bng.util.RequestDeadline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenAiClientTest {
+
+	private final List<StubChatCompletionsServer> servers = new ArrayList<>();
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private LlmRouter router;
+	private TokenAccountingService tokenAccounting;
+
+	@TempDir
+	Path usageDir;
+
+	@AfterEach
+	void tearDown() {
+		servers.forEach(StubChatCompletionsServer::stop);
+	}
+
+	@Test
+	void failsOverOnRateLimiting() {
+		StubChatCompletionsServer limited = startServer("limited", 0, 429);
+		StubChatCompletionsServer healthy = startServer("healthy", 5, 200);
+		OpenAiClient client = clientFor(limited, healthy);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals("answer from healthy", client.getAIAnswer("system", new UserQuestion(null, null, "question " + i), RequestDeadline.none()));
+		}
+		assertTrue(limited.hits.get() <= 1, "rate-limited endpoint got " + limited.hits.get() + " calls");
+	}
+
+	@Test
+	void clientErrorsAreNeitherRetriedNorHeldAgainstTheEndpoint() {
+		StubChatCompletionsServer rejecting = startServer("rejecting", 0, 400);
+		StubChatCompletionsServer spare = startServer("spare", 0, 200);
+		OpenAiClient client = clientFor(rejecting, spare);
+
+		for (int i = 0; i < 10; i++) {
+			client.getAIAnswer("system", new UserQuestion(null, null, "question " + i), RequestDeadline.none());
+		}
+
+		// One attempt per question, and the rejecting endpoint was never ejected for it
+		assertEquals(10, rejecting.hits.get() + spare.hits.get());
+		for (LlmEndpoint endpoint : router.getEndpoints()) {
+			assertEquals(0.0, endpoint.getEwmaErrorRate(), endpoint.getName());
+			assertTrue(endpoint.isAvailable(System.currentTimeMillis()), endpoint.getName());
+		}
+	}
+
+	@Test
+	void recordsPromptAndCachedTokensPerEndpoint() {
+		StubChatCompletionsServer stub = startServer("cached", 0, 200);
+		OpenAiClient client = clientFor(stub);
+
+		client.getAIAnswer("system", new UserQuestion("user", "context", "question one"), RequestDeadline.none());
+		client.getAIAnswer("system", new UserQuestion("user", "context", "question two"), RequestDeadline.none());
+
+		assertEquals(2400.0, meterRegistry.counter("llm.tokens", "endpoint", "cached", "type", "prompt").count());
+		assertEquals(2048.0, meterRegistry.counter("llm.tokens", "endpoint", "cached", "type", "cached").count());
+		assertEquals(160.0, meterRegistry.counter("llm.tokens", "endpoint", "cached", "type", "completion").count());
+		// Prompt plus completion tokens of both calls are charged to the asking user
+		assertEquals(2560, tokenAccounting.usedToday("user"));
+	}
+
+	@Test
+	void abandonsUpstreamCallWhenDeadlineRunsOut() {
+		StubChatCompletionsServer slow = startServer("slow", 3000, 200);
+		OpenAiClient client = clientFor(slow);
+
+		long start = System.nanoTime();
+		assertThrows(DeadlineExceededException.class,
+				() -> client.getAIAnswer("system", new UserQuestion(null, null, "question"), RequestDeadline.after(200)));
+
+		assertTrue(System.nanoTime() - start < 2_000_000_000L, "call should end at the deadline, not the upstream reply");
+		assertEquals(1.0, meterRegistry.counter("ask.abandoned", "stage", "upstream").count());
+		// Our own impatience must not count against the endpoint
+		assertEquals(0.0, router.getEndpoints().get(0).getEwmaErrorRate());
+	}
+
+	@Test
+	void cancellingTheDeadlineDisconnectsTheUpstreamCall() throws Exception {
+		StubChatCompletionsServer slow = startServer("slow", 3000, 200);
+		OpenAiClient client = clientFor(slow);
+		RequestDeadline deadline = RequestDeadline.after(10_000);
+
+		ExecutorService callers = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> answer = callers.submit(() -> client.getAIAnswer("system", new UserQuestion(null, null, "question"), deadline));
+			Thread.sleep(200);
+			long start = System.nanoTime();
+			deadline.cancel();
+
+			Exception failure = assertThrows(Exception.class, answer::get);
+			assertTrue(failure.getCause() instanceof DeadlineExceededException);
+			assertTrue(System.nanoTime() - start < 1_000_000_000L, "cancel should abort the call right away");
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	private OpenAiClient clientFor(StubChatCompletionsServer... stubs) {
+		router = new LlmRouter(StubChatCompletionsServer.routing(4, stubs));
+		tokenAccounting = new TokenAccountingService(new ObjectMapper(), meterRegistry, usageDir.toString(), 0);
+		return new OpenAiClient(new ObjectMapper(), router, meterRegistry, new DeadlineMetrics(meterRegistry), tokenAccounting, 500);
+	}
+
+	private StubChatCompletionsServer startServer(String name, long latencyMs, int status) {
+		StubChatCompletionsServer stub = StubChatCompletionsServer.start(name, latencyMs, status);
+		servers.add(stub);
+		return stub;
+	}
+}
@@ -0,0 +1,78 @@
+package com.bng.service;
+
+import com.bng.config.LlmRoutingProperties;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local chat-completions server answering with a fixed status and token usage after an injected delay
+ */
+final class StubChatCompletionsServer {
+
+	final String name;
+	final AtomicInteger hits = new AtomicInteger();
+	private final HttpServer httpServer;
+
+	private StubChatCompletionsServer(String name, HttpServer httpServer) {
+		this.name = name;
+		this.httpServer = httpServer;
+	}
+
+	static StubChatCompletionsServer start(String name, long latencyMs, int status) {
+		try {
+			HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			httpServer.setExecutor(Executors.newCachedThreadPool());
+			StubChatCompletionsServer stub = new StubChatCompletionsServer(name, httpServer);
+			httpServer.createContext("/v1/chat/completions", exchange -> {
+				stub.hits.incrementAndGet();
+				exchange.getRequestBody().readAllBytes();
+				try {
+					Thread.sleep(latencyMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				byte[] body = ("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"answer from " + name + "\"}}]," +
+						"\"usage\":{\"prompt_tokens\":1200,\"completion_tokens\":80,\"prompt_tokens_details\":{\"cached_tokens\":1024}}}")
+						.getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(status, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			});
+			httpServer.start();
+			return stub;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	void stop() {
+		httpServer.stop(0);
+	}
+
+	/**
+	 * Routing configuration with one endpoint per stub server
+	 */
+	static LlmRoutingProperties routing(int maxConcurrency, StubChatCompletionsServer... stubs) {
+		LlmRoutingProperties properties = new LlmRoutingProperties();
+		properties.setCooldownMs(60_000);
+		properties.setAcquireTimeoutMs(1000);
+		for (StubChatCompletionsServer stub : stubs) {
+			LlmRoutingProperties.Endpoint endpoint = new LlmRoutingProperties.Endpoint();
+			endpoint.setName(stub.name);
+			endpoint.setUrl("http://localhost:" + stub.httpServer.getAddress().getPort() + "/v1/chat/completions");
+			endpoint.setKey("test-key");
+			endpoint.setModel("stub-model");
+			endpoint.setMaxConcurrency(maxConcurrency);
+			properties.getEndpoints().add(endpoint);
+		}
+		return properties;
+	}
+}
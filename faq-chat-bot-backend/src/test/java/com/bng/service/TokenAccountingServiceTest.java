@@ -0,0 +1,70 @@
+package com.bng.service;
+
+import com.bng.exception.QuotaExceededException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenAccountingServiceTest {
+
+	@TempDir
+	Path usageDir;
+
+	private TokenAccountingService newService(long dailyQuota) {
+		return new TokenAccountingService(new ObjectMapper(), new SimpleMeterRegistry(), usageDir.toString(), dailyQuota);
+	}
+
+	@Test
+	void refusesUpstreamCallsOnceTheDailyQuotaIsUsed() {
+		TokenAccountingService accounting = newService(1000);
+		accounting.record("alice", new TokenUsage(700, 200, 500));
+		assertDoesNotThrow(() -> accounting.checkQuota("alice"));
+
+		accounting.record("alice", new TokenUsage(100, 0, 0));
+		QuotaExceededException refused = assertThrows(QuotaExceededException.class, () -> accounting.checkQuota("alice"));
+		assertTrue(refused.getRetryAfterSeconds() > 0);
+		assertDoesNotThrow(() -> accounting.checkQuota("bob"));
+	}
+
+	@Test
+	void countsConcurrentCallsExactly() throws Exception {
+		TokenAccountingService accounting = newService(0);
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8000; i++) {
+			callers.execute(() -> accounting.record("alice", new TokenUsage(10, 5, 0)));
+		}
+		callers.shutdown();
+		assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(120_000, accounting.usedToday("alice"));
+	}
+
+	@Test
+	void splitsSharedCallsWithoutLosingTokens() {
+		TokenAccountingService accounting = newService(0);
+		accounting.recordShared(List.of("alice", "bob", "carol"), new TokenUsage(100, 20, 0));
+		assertEquals(34 + 7, accounting.usedToday("alice"));
+		assertEquals(33 + 7, accounting.usedToday("bob"));
+		assertEquals(33 + 6, accounting.usedToday("carol"));
+	}
+
+	@Test
+	void todaysTotalsSurviveARestart() {
+		TokenAccountingService accounting = newService(0);
+		accounting.record("alice", new TokenUsage(300, 50, 100));
+		accounting.shutdown();
+
+		assertEquals(350, newService(0).usedToday("alice"));
+	}
+}
@@ -0,0 +1,117 @@
+package com.bng.service.impl;
+
+import com.bng.model.AskBatchItem;
+import com.bng.model.AskRequest;
+import com.bng.model.AskResponse;
+import com.bng.service.AskLanes;
+import com.bng.service.AskService;
+import com.bng.util.CachedAnswer;
+import com.bng.util.RequestDeadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AskBatchServiceImplTest {
+
+	private final AskLanes lanes = new AskLanes(new SimpleMeterRegistry(), 8, 16, 1);
+	private final StubAskService askService = new StubAskService();
+
+	@AfterEach
+	void tearDown() {
+		lanes.shutdown();
+	}
+
+	@Test
+	void answersInQuestionOrderWithBoundedParallelism() {
+		AskBatchServiceImpl batchService = new AskBatchServiceImpl(askService, lanes, 2);
+
+		List<CompletableFuture<AskBatchItem>> answers = batchService.answerAll(
+				List.of("slow one", "cached", "slow two", "slow three", "slow four"), "arjuna", RequestDeadline.after(5000));
+
+		List<String> expected = List.of("upstream: slow one", "cache: cached", "upstream: slow two", "upstream: slow three", "upstream: slow four");
+		for (int i = 0; i < expected.size(); i++) {
+			AskBatchItem item = answers.get(i).join();
+			assertEquals(i, item.getIndex());
+			assertEquals(expected.get(i), item.getAnswer());
+			assertNull(item.getError());
+		}
+		assertEquals(4, askService.upstreamCalls.get());
+		assertTrue(askService.maxInFlight.get() <= 2, "in flight: " + askService.maxInFlight.get());
+	}
+
+	@Test
+	void repeatedQuestionsShareOneUpstreamCall() {
+		AskBatchServiceImpl batchService = new AskBatchServiceImpl(askService, lanes, 4);
+
+		List<CompletableFuture<AskBatchItem>> answers = batchService.answerAll(
+				List.of("same question", " same question ", "same question"), "arjuna", RequestDeadline.after(5000));
+
+		for (CompletableFuture<AskBatchItem> answer : answers) {
+			assertEquals("upstream: same question", answer.join().getAnswer());
+		}
+		assertEquals(1, askService.upstreamCalls.get());
+	}
+
+	@Test
+	void expiredDeadlineFailsRemainingQuestions() {
+		AskBatchServiceImpl batchService = new AskBatchServiceImpl(askService, lanes, 1);
+		RequestDeadline deadline = RequestDeadline.after(5000);
+		deadline.cancel();
+
+		List<CompletableFuture<AskBatchItem>> answers = batchService.answerAll(List.of("cached", "slow one"), "arjuna", deadline);
+
+		assertEquals("cache: cached", answers.get(0).join().getAnswer());
+		assertTrue(answers.get(1).join().getError().contains("deadline"));
+		assertEquals(0, askService.upstreamCalls.get());
+	}
+
+	/**
+	 * Answers "cached" from the cache and everything else from a slow upstream
+	 */
+	private static class StubAskService implements AskService {
+		private final AtomicInteger upstreamCalls = new AtomicInteger();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		@Override
+		public AskResponse getAnswer(AskRequest request, String username, RequestDeadline deadline) throws Exception {
+			AskResponse cached = getCachedAnswer(request, username);
+			return cached != null ? cached : getUpstreamAnswer(request, username, deadline);
+		}
+
+		@Override
+		public AskResponse getCachedAnswer(AskRequest request, String username) {
+			return request.getQuestion().equals("cached") ? new AskResponse("cache: cached") : null;
+		}
+
+		@Override
+		public CachedAnswer findCachedAnswer(AskRequest request, String username) {
+			return request.getQuestion().equals("cached") ? new CachedAnswer("cache: cached") : null;
+		}
+
+		@Override
+		public AskResponse getUpstreamAnswer(AskRequest request, String username, RequestDeadline deadline) throws Exception {
+			upstreamCalls.incrementAndGet();
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+				return new AskResponse("upstream: " + request.getQuestion());
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		@Override
+		public String precomputeAnswer(String question) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.bng.service.impl;
+
+import com.bng.model.AnswerSource;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatLogServiceImplTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+	@TempDir
+	Path logDir;
+
+	private ChatLogServiceImpl newService(int queueCapacity) {
+		return new ChatLogServiceImpl(objectMapper, event -> { }, logDir.toString(), queueCapacity);
+	}
+
+	@Test
+	void writesEveryQueuedEntryBeforeShuttingDown() throws IOException {
+		ChatLogServiceImpl chatLogService = newService(1000);
+		for (int i = 0; i < 500; i++) {
+			chatLogService.logChat("alice", "question " + i, "answer " + i, AnswerSource.UPSTREAM);
+		}
+		chatLogService.shutdown();
+
+		JsonNode entries = readTodaysLog();
+		assertEquals(500, entries.size());
+		for (int i = 0; i < 500; i++) {
+			assertEquals("question " + i, entries.get(i).get("question").asText());
+		}
+	}
+
+	@Test
+	void keepsEntriesFromConcurrentUsersWhenTheQueueOverflows() throws Exception {
+		// A queue this small makes request threads write inline alongside the background writer
+		ChatLogServiceImpl chatLogService = newService(2);
+		ExecutorService users = Executors.newFixedThreadPool(8);
+		for (int u = 0; u < 8; u++) {
+			String username = "user" + u;
+			users.execute(() -> {
+				for (int i = 0; i < 50; i++) {
+					chatLogService.logChat(username, "question " + i, "answer", AnswerSource.CACHE);
+				}
+			});
+		}
+		users.shutdown();
+		assertTrue(users.awaitTermination(30, TimeUnit.SECONDS));
+		chatLogService.shutdown();
+
+		Set<String> logged = new HashSet<>();
+		for (JsonNode entry : readTodaysLog()) {
+			logged.add(entry.get("username").asText() + "/" + entry.get("question").asText());
+		}
+		assertEquals(400, logged.size());
+	}
+
+	@Test
+	void repairsAnUnterminatedLogBeforeAppending() throws IOException {
+		ChatLogServiceImpl chatLogService = newService(10);
+		chatLogService.logChat("alice", "first", "answer", AnswerSource.UPSTREAM);
+		chatLogService.shutdown();
+		Path logFile = todaysLog();
+		String content = Files.readString(logFile);
+		Files.writeString(logFile, content.substring(0, content.length() - 1) + ",");
+
+		ChatLogServiceImpl restarted = newService(10);
+		restarted.logChat("bob", "second", "answer", AnswerSource.UPSTREAM);
+		restarted.shutdown();
+
+		JsonNode entries = readTodaysLog();
+		assertEquals(2, entries.size());
+		assertEquals("second", entries.get(1).get("question").asText());
+	}
+
+	private Path todaysLog() throws IOException {
+		try (Stream<Path> files = Files.list(logDir)) {
+			List<Path> logs = files.filter(file -> file.getFileName().toString().startsWith("chat_logs_")).toList();
+			assertEquals(1, logs.size());
+			return logs.get(0);
+		}
+	}
+
+	private JsonNode readTodaysLog() throws IOException {
+		return objectMapper.readTree(todaysLog().toFile());
+	}
+}
@@ -0,0 +1,65 @@
+package com.bng.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AnswerSnapshotTest {
+
+	@TempDir
+	Path dir;
+
+	private static Map<String, String> entries() {
+		Map<String, String> entries = new LinkedHashMap<>();
+		entries.put("*::what is karma?", "Action, and the consequences that follow it.");
+		entries.put("*::who is arjuna?", "The warrior prince to whom I speak on the field of Kurukshetra \u2014 my friend.");
+		entries.put("*::what is yoga?", "");
+		return entries;
+	}
+
+	@Test
+	void readsBackWhatWasWrittenInOrder() throws IOException {
+		Path path = dir.resolve("nested/answers.snapshot");
+		AnswerSnapshot.write(path, entries());
+
+		Map<String, String> read = AnswerSnapshot.read(path);
+		assertEquals(entries(), read);
+		assertEquals(List.copyOf(entries().keySet()), List.copyOf(read.keySet()));
+		assertFalse(Files.exists(dir.resolve("nested/answers.snapshot.tmp")));
+	}
+
+	@Test
+	void rejectsACorruptedSnapshot() throws IOException {
+		Path path = dir.resolve("answers.snapshot");
+		AnswerSnapshot.write(path, entries());
+		byte[] bytes = Files.readAllBytes(path);
+		bytes[bytes.length / 2] ^= 0x20;
+		Files.write(path, bytes);
+
+		assertThrows(IOException.class, () -> AnswerSnapshot.read(path));
+	}
+
+	@Test
+	void rejectsATruncatedSnapshot() throws IOException {
+		Path path = dir.resolve("answers.snapshot");
+		AnswerSnapshot.write(path, entries());
+		byte[] bytes = Files.readAllBytes(path);
+
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+		assertThrows(IOException.class, () -> AnswerSnapshot.read(path));
+
+		Files.write(path, Arrays.copyOf(bytes, 10));
+		assertThrows(IOException.class, () -> AnswerSnapshot.read(path));
+	}
+}
@@ -0,0 +1,26 @@
+package com.bng.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CacheUtilTest {
+
+	@Test
+	void evictsTheLeastRecentlyUsedAnswer() {
+		DiskAnswerCache noDisk = new DiskAnswerCache(new SimpleMeterRegistry(), false, "unused", 1000, 0.5, 1000);
+		CacheUtil cache = new CacheUtil(noDisk, 2);
+		cache.put("karma", "Action.");
+		cache.put("dharma", "Duty.");
+
+		// Reading karma makes dharma the eviction candidate, although it was stored later
+		assertEquals("Action.", cache.get("karma"));
+		cache.put("yoga", "Union.");
+
+		assertEquals("Action.", cache.get("karma"));
+		assertNull(cache.get("dharma"));
+		assertEquals("Union.", cache.get("yoga"));
+	}
+}
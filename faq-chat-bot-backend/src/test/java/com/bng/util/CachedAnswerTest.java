@@ -0,0 +1,70 @@
+package com.bng.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedAnswerTest {
+
+	private static final String ANSWER = "You have a right to perform your prescribed duties, but you are not entitled to the fruits of your actions. ".repeat(8);
+
+	private static byte[] json(String answer) {
+		return ("{\"answer\":\"" + answer + "\"}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void encodesOnceAndReusesTheBody() throws Exception {
+		CachedAnswer cached = new CachedAnswer(ANSWER);
+		AtomicInteger encodings = new AtomicInteger();
+		CachedAnswer.Encoded first = cached.encoded(answer -> {
+			encodings.incrementAndGet();
+			return json(answer);
+		});
+		CachedAnswer.Encoded second = cached.encoded(answer -> {
+			encodings.incrementAndGet();
+			return json(answer);
+		});
+
+		assertSame(first, second);
+		assertEquals(1, encodings.get());
+		assertTrue(first.gzipped().length < first.body().length / 2);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.gzipped()))) {
+			assertEquals(new String(json(ANSWER), StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void etagsAreStrongPerCodingAndFollowTheAnswer() {
+		CachedAnswer.Encoded encoded = new CachedAnswer(ANSWER).encoded(CachedAnswerTest::json);
+		assertTrue(encoded.etag().startsWith("\"") && encoded.etag().endsWith("\""));
+		assertNotEquals(encoded.etag(), encoded.gzipEtag());
+		assertEquals(encoded.etag(), new CachedAnswer(ANSWER).encoded(CachedAnswerTest::json).etag());
+		assertNotEquals(encoded.etag(), new CachedAnswer(ANSWER + "!").encoded(CachedAnswerTest::json).etag());
+	}
+
+	@Test
+	void matchesIfNoneMatchInEitherCoding() {
+		CachedAnswer.Encoded encoded = new CachedAnswer(ANSWER).encoded(CachedAnswerTest::json);
+		assertTrue(encoded.matches(encoded.etag()));
+		assertTrue(encoded.matches("\"other\", W/" + encoded.gzipEtag()));
+		assertTrue(encoded.matches("*"));
+		assertFalse(encoded.matches("\"other\""));
+		assertFalse(encoded.matches(null));
+	}
+
+	@Test
+	void doesNotCompressWhatGzipWouldGrow() {
+		CachedAnswer.Encoded encoded = new CachedAnswer("Om").encoded(CachedAnswerTest::json);
+		assertNull(encoded.gzipped());
+	}
+}
@@ -0,0 +1,180 @@
+package com.bng.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskAnswerCacheTest {
+
+	// crc32, key length, value length, expiry
+	private static final int HEADER_BYTES = 20;
+	private static final long WEEK_MS = 7L * 24 * 60 * 60 * 1000;
+
+	@TempDir
+	Path dir;
+
+	private final List<DiskAnswerCache> caches = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		caches.forEach(DiskAnswerCache::close);
+	}
+
+	private DiskAnswerCache open(MeterRegistry registry, long ttlMs, long maxBytes) {
+		DiskAnswerCache cache = new DiskAnswerCache(registry, true, dir.resolve("answers.log").toString(), ttlMs, 0.5, maxBytes);
+		cache.open();
+		caches.add(cache);
+		return cache;
+	}
+
+	private DiskAnswerCache open() {
+		return open(new SimpleMeterRegistry(), WEEK_MS, 1L << 30);
+	}
+
+	@Test
+	void keepsTheLatestAnswersAcrossReopening() {
+		DiskAnswerCache cache = open();
+		cache.put("*::what is karma?", "Action.");
+		cache.put("*::who is arjuna?", "My friend.");
+		cache.put("*::what is karma?", "Action, and the consequences that follow it.");
+		assertEquals("Action, and the consequences that follow it.", cache.get("*::what is karma?"));
+		cache.close();
+
+		DiskAnswerCache reopened = open();
+		assertEquals("Action, and the consequences that follow it.", reopened.get("*::what is karma?"));
+		assertEquals("My friend.", reopened.get("*::who is arjuna?"));
+		assertNull(reopened.get("*::what is yoga?"));
+	}
+
+	@Test
+	void recoveryTruncatesAtTheFirstCorruptRecord() throws IOException {
+		DiskAnswerCache cache = open();
+		cache.put("a", "first");
+		cache.put("b", "second");
+		cache.put("c", "third");
+		cache.close();
+
+		// Flip a byte of the second record's value
+		flipByte(recordLength("a", "first") + HEADER_BYTES + 1);
+
+		DiskAnswerCache reopened = open();
+		assertEquals("first", reopened.get("a"));
+		assertNull(reopened.get("b"));
+		// Valid records behind the corrupt one are dropped too, as their position can no longer be trusted
+		assertNull(reopened.get("c"));
+	}
+
+	@Test
+	void recoveryDropsAPartiallyWrittenRecordForGood() throws IOException {
+		DiskAnswerCache cache = open();
+		cache.put("a", "first");
+		cache.put("b", "second");
+		cache.close();
+
+		// A torn write: the second record's header made it to disk, the end of its value did not
+		int recordOffset = recordLength("a", "first");
+		zeroBytes(recordOffset + recordLength("b", "second") - 3, 3);
+
+		DiskAnswerCache reopened = open();
+		assertEquals("first", reopened.get("a"));
+		assertNull(reopened.get("b"));
+		reopened.put("d", "fourth");
+		reopened.close();
+
+		DiskAnswerCache again = open();
+		assertEquals("first", again.get("a"));
+		assertNull(again.get("b"));
+		assertEquals("fourth", again.get("d"));
+	}
+
+	@Test
+	void compactionDropsOverwrittenAndExpiredRecords() throws InterruptedException {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		DiskAnswerCache cache = open(registry, 200, 1L << 30);
+		String value = "x".repeat(64 * 1024);
+		for (int i = 0; i < 20; i++) {
+			cache.put("overwritten", value + i);
+		}
+		cache.put("expiring", value);
+		Thread.sleep(300);
+
+		String live = "y".repeat(1024);
+		cache.put("overwritten", value);
+		cache.put("live", live);
+		double before = registry.get("ask.cache.disk.bytes").gauge().value();
+		assertTrue(before >= 1 << 20, "log should be past the compaction minimum, was " + before);
+
+		cache.compactIfNeeded();
+
+		assertEquals(recordLength("overwritten", value) + recordLength("live", live),
+				registry.get("ask.cache.disk.bytes").gauge().value(), 0.0);
+		assertEquals(value, cache.get("overwritten"));
+		assertEquals(live, cache.get("live"));
+		assertNull(cache.get("expiring"));
+	}
+
+	@Test
+	void keepsServingAnswersAfterTheLogGrows() {
+		DiskAnswerCache cache = open();
+		String value = "w".repeat(1 << 20);
+		// The log is mapped in 16 MB steps, so this crosses the first boundary
+		for (int i = 0; i < 20; i++) {
+			cache.put("k" + i, value + i);
+		}
+
+		for (int i = 0; i < 20; i++) {
+			assertEquals(value + i, cache.get("k" + i), "k" + i);
+		}
+	}
+
+	@Test
+	void refusesNewAnswersOnceMaxBytesIsReached() {
+		int maxBytes = 4096;
+		String value = "z".repeat(1000);
+		DiskAnswerCache cache = open(new SimpleMeterRegistry(), WEEK_MS, maxBytes);
+		int stored = maxBytes / recordLength("k0", value);
+		for (int i = 0; i < stored; i++) {
+			cache.put("k" + i, value);
+		}
+
+		cache.put("k" + stored, value);
+
+		assertNull(cache.get("k" + stored));
+		for (int i = 0; i < stored; i++) {
+			assertEquals(value, cache.get("k" + i), "k" + i);
+		}
+	}
+
+	private static int recordLength(String key, String value) {
+		return HEADER_BYTES + key.length() + value.length();
+	}
+
+	private void flipByte(long offset) throws IOException {
+		try (FileChannel channel = FileChannel.open(dir.resolve("answers.log"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1);
+			channel.read(buffer, offset);
+			buffer.put(0, (byte) (buffer.get(0) ^ 0x20));
+			channel.write(buffer.rewind(), offset);
+		}
+	}
+
+	private void zeroBytes(long offset, int length) throws IOException {
+		try (FileChannel channel = FileChannel.open(dir.resolve("answers.log"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(length), offset);
+		}
+	}
+}